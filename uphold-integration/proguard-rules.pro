@@ -5,8 +5,8 @@
 -keep interface org.dash.wallet.integration.uphold.** {*;}
 
 #OkHttp
--dontwarn com.squareup.okhttp.**
--dontnote com.squareup.okhttp.internal.Platform
+-dontwarn okhttp3.**
+-dontnote okhttp3.internal.platform.Platform
 -dontwarn okio.**
 
 # Retrofit
@@ -23,6 +23,7 @@ import android.content.SharedPreferences;
 import com.securepreferences.SecurePreferences;
 import com.squareup.moshi.Moshi;
 
+import org.dash.wallet.common.HttpRuntime;
 import org.dash.wallet.common.data.BigDecimalAdapter;
 import org.json.JSONObject;
 import org.slf4j.Logger;
@@ -102,7 +103,7 @@ public class UpholdClient {
         this.accessToken = getStoredAccessToken();
 
         String baseUrl = UpholdConstants.CLIENT_BASE_URL;
-        OkHttpClient okClient = new OkHttpClient.Builder().addInterceptor(headerInterceptor).addInterceptor(loggingIntercepter).build();
+        OkHttpClient okClient = HttpRuntime.client().newBuilder().addInterceptor(headerInterceptor).addInterceptor(loggingIntercepter).build();
 
         Moshi moshi = new Moshi.Builder()
                 .add(new BigDecimalAdapter())
@@ -1,26 +1,67 @@
 package de.schildbach.wallet;
 
+import android.arch.persistence.db.SupportSQLiteDatabase;
 import android.arch.persistence.room.Database;
 import android.arch.persistence.room.Room;
 import android.arch.persistence.room.RoomDatabase;
+import android.arch.persistence.room.migration.Migration;
 
 import de.schildbach.wallet.rates.ExchangeRate;
+import de.schildbach.wallet.rates.ExchangeRateHistoryDao;
+import de.schildbach.wallet.rates.ExchangeRateHistoryEntry;
 import de.schildbach.wallet.rates.ExchangeRatesDao;
+import de.schildbach.wallet.service.PeerRecord;
+import de.schildbach.wallet.service.PeerRecordsDao;
 
 /**
  * @author Samuel Barbosa
  */
-@Database(entities = {ExchangeRate.class}, version = 1)
+@Database(entities = {ExchangeRate.class, PeerRecord.class, ExchangeRateHistoryEntry.class}, version = 4)
 public abstract class AppDatabase extends RoomDatabase {
 
     private static AppDatabase instance;
 
     public abstract ExchangeRatesDao exchangeRatesDao();
 
+    public abstract PeerRecordsDao peerRecordsDao();
+
+    public abstract ExchangeRateHistoryDao exchangeRateHistoryDao();
+
+    static final Migration MIGRATION_1_2 = new Migration(1, 2) {
+        @Override
+        public void migrate(SupportSQLiteDatabase database) {
+            database.execSQL("CREATE TABLE IF NOT EXISTS `peers` (`host` TEXT NOT NULL, `port` INTEGER NOT NULL, "
+                    + "`lastSeen` INTEGER NOT NULL, `lastConnected` INTEGER NOT NULL, "
+                    + "`connects` INTEGER NOT NULL, `failures` INTEGER NOT NULL, "
+                    + "`blocksServed` INTEGER NOT NULL, `pingMs` INTEGER NOT NULL, "
+                    + "`lastDisconnectReason` TEXT, PRIMARY KEY(`host`, `port`))");
+        }
+    };
+
+    static final Migration MIGRATION_2_3 = new Migration(2, 3) {
+        @Override
+        public void migrate(SupportSQLiteDatabase database) {
+            database.execSQL("ALTER TABLE `exchange_rates` ADD COLUMN `value` INTEGER NOT NULL DEFAULT 0");
+            // rounded rather than truncated to absorb binary floating point error, the next fetch replaces these
+            database.execSQL("UPDATE `exchange_rates` SET `value` = CAST(ROUND(CAST(`rate` AS REAL) * 10000) AS INTEGER)");
+        }
+    };
+
+    static final Migration MIGRATION_3_4 = new Migration(3, 4) {
+        @Override
+        public void migrate(SupportSQLiteDatabase database) {
+            database.execSQL("CREATE TABLE IF NOT EXISTS `exchange_rate_history` (`currencyCode` TEXT NOT NULL, "
+                    + "`timestamp` INTEGER NOT NULL, `value` INTEGER NOT NULL, "
+                    + "PRIMARY KEY(`currencyCode`, `timestamp`))");
+        }
+    };
+
     public static AppDatabase getAppDatabase() {
         if (instance == null) {
             instance = Room.databaseBuilder(WalletApplication.getInstance(),
-                    AppDatabase.class, "dash-wallet-database").build();
+                    AppDatabase.class, "dash-wallet-database")
+                    .addMigrations(MIGRATION_1_2, MIGRATION_2_3, MIGRATION_3_4)
+                    .build();
         }
         return instance;
     }
@@ -31,14 +31,15 @@ import org.bitcoinj.params.MainNetParams;
 import org.bitcoinj.params.TestNet3Params;
 import org.bitcoinj.utils.MonetaryFormat;
 import org.bitcoinj.wallet.DeterministicKeyChain;
+import org.dash.wallet.common.HttpRuntime;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.google.common.collect.ImmutableList;
 import com.google.common.io.BaseEncoding;
-import com.squareup.okhttp.HttpUrl;
-import com.squareup.okhttp.OkHttpClient;
-import com.squareup.okhttp.logging.HttpLoggingInterceptor;
+import okhttp3.HttpUrl;
+import okhttp3.OkHttpClient;
+import okhttp3.logging.HttpLoggingInterceptor;
 
 import de.schildbach.wallet_test.BuildConfig;
 
@@ -115,9 +116,21 @@ public final class Constants {
         /** Filename of the wallet. */
         public static final String WALLET_FILENAME_PROTOBUF = "wallet-protobuf" + FILENAME_NETWORK_SUFFIX;
 
+        /** Filename of the log of transaction changes made since the last wallet save. */
+        public static final String WALLET_JOURNAL_FILENAME = "wallet-journal" + FILENAME_NETWORK_SUFFIX;
+
+        /** How long records appended to the wallet journal are collected before syncing them to disk as one. */
+        public static final long WALLET_JOURNAL_SYNC_DELAY_MS = 100;
+
         /** How often the wallet is autosaved. */
         public static final long WALLET_AUTOSAVE_DELAY_MS = 5 * DateUtils.SECOND_IN_MILLIS;
 
+        /** How long requested wallet saves are collected before writing them as one. */
+        public static final long WALLET_SAVE_WINDOW_MS = DateUtils.SECOND_IN_MILLIS;
+
+        /** How long until a requested wallet save that failed is tried again. */
+        public static final long WALLET_SAVE_RETRY_DELAY_MS = 10 * DateUtils.SECOND_IN_MILLIS;
+
         /** Filename of the automatic key backup (old format, can only be read). */
         public static final String WALLET_KEY_BACKUP_BASE58 = "key-backup-base58" + FILENAME_NETWORK_SUFFIX;
 
@@ -256,14 +269,8 @@ public final class Constants {
             .equals(NetworkParameters.ID_MAINNET) ? 50002 : 51002;
 
     /** Shared HTTP client, can reuse connections */
-    public static final OkHttpClient HTTP_CLIENT = new OkHttpClient();
+    public static final OkHttpClient HTTP_CLIENT;
     static {
-        HTTP_CLIENT.setFollowRedirects(false);
-        HTTP_CLIENT.setFollowSslRedirects(true);
-        HTTP_CLIENT.setConnectTimeout(15, TimeUnit.SECONDS);
-        HTTP_CLIENT.setWriteTimeout(15, TimeUnit.SECONDS);
-        HTTP_CLIENT.setReadTimeout(15, TimeUnit.SECONDS);
-
         final HttpLoggingInterceptor loggingInterceptor = new HttpLoggingInterceptor(
                 new HttpLoggingInterceptor.Logger() {
                     @Override
@@ -272,7 +279,15 @@ public final class Constants {
                     }
                 });
         loggingInterceptor.setLevel(HttpLoggingInterceptor.Level.BASIC);
-        HTTP_CLIENT.interceptors().add(loggingInterceptor);
+
+        HTTP_CLIENT = HttpRuntime.client().newBuilder()
+                .followRedirects(false)
+                .followSslRedirects(true)
+                .connectTimeout(15, TimeUnit.SECONDS)
+                .writeTimeout(15, TimeUnit.SECONDS)
+                .readTimeout(15, TimeUnit.SECONDS)
+                .addInterceptor(loggingInterceptor)
+                .build();
     }
 
     private static final Logger log = LoggerFactory.getLogger(Constants.class);
@@ -23,6 +23,7 @@ import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.util.List;
 import java.util.concurrent.TimeUnit;
 
 import org.bitcoinj.core.CoinDefinition;
@@ -35,6 +36,7 @@ import org.bitcoinj.utils.Threading;
 import org.bitcoinj.wallet.Protos;
 import org.bitcoinj.wallet.UnreadableWalletException;
 import org.bitcoinj.wallet.Wallet;
+import org.bitcoinj.wallet.WalletFiles;
 import org.bitcoinj.wallet.WalletProtobufSerializer;
 import org.dash.wallet.common.Configuration;
 import org.slf4j.Logger;
@@ -42,11 +44,16 @@ import org.slf4j.LoggerFactory;
 
 import com.google.common.base.Stopwatch;
 
+import de.schildbach.wallet.data.TransactionHistory;
+import de.schildbach.wallet.data.WalletJournal;
+import de.schildbach.wallet.data.WalletSaveCoordinator;
 import de.schildbach.wallet.data.WalletLock;
 import de.schildbach.wallet.service.BlockchainService;
 import de.schildbach.wallet.service.BlockchainServiceImpl;
 import de.schildbach.wallet.ui.AbstractWalletActivity;
 import de.schildbach.wallet.util.CrashReporter;
+import de.schildbach.wallet.util.KeyBackupSerializer;
+import de.schildbach.wallet.util.StartupTasks;
 import de.schildbach.wallet_test.BuildConfig;
 import de.schildbach.wallet_test.R;
 
@@ -69,6 +76,7 @@ import android.os.Build;
 import android.os.StrictMode;
 import android.os.SystemClock;
 import android.preference.PreferenceManager;
+import android.support.annotation.Nullable;
 import android.support.annotation.StringRes;
 import android.support.multidex.MultiDexApplication;
 import android.support.v4.content.LocalBroadcastManager;
@@ -96,10 +104,23 @@ public class WalletApplication extends MultiDexApplication {
 
     private File walletFile;
     private Wallet wallet;
+    private WalletFiles walletFiles;
+    private WalletJournal walletJournal;
+    private long walletJournalSavePosition;
+    private long walletAutosaveStart;
+    private WalletSaveCoordinator walletSaveCoordinator;
+    private TransactionHistory transactionHistory;
+    @Nullable
+    private volatile WalletFiles.Listener walletSaveListener;
     private PackageInfo packageInfo;
 
     private boolean backupDisclaimerDismissed = false;
 
+    private final StartupTasks startupTasks = new StartupTasks(2);
+    private static final String STARTUP_TASK_MNEMONIC_CODE = "mnemonic code";
+    private static final String STARTUP_TASK_NOTIFICATION_CHANNELS = "notification channels";
+    private static final String STARTUP_TASK_WALLET = "wallet";
+
     public static final String ACTION_WALLET_REFERENCE_CHANGED = WalletApplication.class.getPackage().getName()
             + ".wallet_reference_changed";
 
@@ -159,8 +180,6 @@ public class WalletApplication extends MultiDexApplication {
             }
         };
 
-        initMnemonicCode();
-
         config = new Configuration(PreferenceManager.getDefaultSharedPreferences(this), getResources());
         activityManager = (ActivityManager) getSystemService(Context.ACTIVITY_SERVICE);
 
@@ -171,30 +190,72 @@ public class WalletApplication extends MultiDexApplication {
                 BlockchainServiceImpl.class);
 
         walletFile = getFileStreamPath(Constants.Files.WALLET_FILENAME_PROTOBUF);
+        walletJournal = new WalletJournal(getFileStreamPath(Constants.Files.WALLET_JOURNAL_FILENAME),
+                Constants.Files.WALLET_JOURNAL_SYNC_DELAY_MS);
+        walletSaveCoordinator = new WalletSaveCoordinator(new WalletSaveCoordinator.Saver() {
+            @Override
+            public long save() throws IOException {
+                protobufSerializeWallet(wallet);
+                return walletFile.length();
+            }
+        }, Constants.Files.WALLET_SAVE_WINDOW_MS, Constants.Files.WALLET_SAVE_RETRY_DELAY_MS);
 
-        loadWalletFromProtobuf();
-
-		org.bitcoinj.core.Context context = wallet.getContext();
-
-		wallet.getContext().initDash(true, true);
-
-        if (config.versionCodeCrossed(packageInfo.versionCode, VERSION_CODE_SHOW_BACKUP_REMINDER)
-                && !wallet.getImportedKeys().isEmpty()) {
-            log.info("showing backup reminder once, because of imported keys being present");
-            config.armBackupReminder();
-        }
-
-        config.updateLastVersionCode(packageInfo.versionCode);
+        // only the wallet is needed before the first activity can show, everything else runs next to it
+        startupTasks.add(STARTUP_TASK_MNEMONIC_CODE, false, new Runnable() {
+            @Override
+            public void run() {
+                initMnemonicCode();
+            }
+        });
+        startupTasks.add(STARTUP_TASK_NOTIFICATION_CHANNELS, false, new Runnable() {
+            @Override
+            public void run() {
+                if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O)
+                    createNotificationChannels();
+            }
+        });
+        startupTasks.add(STARTUP_TASK_WALLET, true, new Runnable() {
+            @Override
+            public void run() {
+                loadWalletFromProtobuf();
 
-        afterLoadWallet();
+                if (config.versionCodeCrossed(packageInfo.versionCode, VERSION_CODE_SHOW_BACKUP_REMINDER)
+                        && !wallet.getImportedKeys().isEmpty()) {
+                    log.info("showing backup reminder once, because of imported keys being present");
+                    config.armBackupReminder();
+                }
 
-        cleanupFiles();
+                config.updateLastVersionCode(packageInfo.versionCode);
+            }
+        });
+        startupTasks.add("dash", true, new Runnable() {
+            @Override
+            public void run() {
+                wallet.getContext().initDash(true, true);
+            }
+        }, STARTUP_TASK_WALLET);
+        startupTasks.add("after load wallet", true, new Runnable() {
+            @Override
+            public void run() {
+                afterLoadWallet();
+            }
+        }, "dash");
+        startupTasks.add("key backup", false, new Runnable() {
+            @Override
+            public void run() {
+                ensureKeyBackup();
+            }
+        }, "after load wallet");
+        startupTasks.add("cleanup files", false, new Runnable() {
+            @Override
+            public void run() {
+                cleanupFiles();
+            }
+        }, STARTUP_TASK_WALLET);
+        startupTasks.start();
 
         registerScreenOffReceiver();
 
-        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
-            createNotificationChannels();
-        }
         WalletLock.getInstance().setConfiguration(config);
     }
 
@@ -252,7 +313,31 @@ public class WalletApplication extends MultiDexApplication {
 
 
     private void afterLoadWallet() {
-        wallet.autosaveToFile(walletFile, Constants.Files.WALLET_AUTOSAVE_DELAY_MS, TimeUnit.MILLISECONDS, null);
+        walletFiles = wallet.autosaveToFile(walletFile, Constants.Files.WALLET_AUTOSAVE_DELAY_MS,
+                TimeUnit.MILLISECONDS, new WalletFiles.Listener() {
+                    @Override
+                    public void onBeforeAutoSave(final File tempFile) {
+                        walletAutosaveStart = System.currentTimeMillis();
+                        walletJournalSavePosition = walletJournal.position();
+                        final WalletFiles.Listener listener = walletSaveListener;
+                        if (listener != null)
+                            listener.onBeforeAutoSave(tempFile);
+                    }
+
+                    @Override
+                    public void onAfterAutoSave(final File newlySavedFile) {
+                        compactWalletJournal(walletJournalSavePosition);
+                        walletSaveCoordinator.recordSave(System.currentTimeMillis() - walletAutosaveStart,
+                                newlySavedFile.length());
+                        final WalletFiles.Listener listener = walletSaveListener;
+                        if (listener != null)
+                            listener.onAfterAutoSave(newlySavedFile);
+                    }
+                });
+
+        // changes replayed from the journal get into the wallet file with the next autosave
+        if (walletJournal.position() > 0)
+            walletFiles.saveLater();
 
         // clean up spam
         try {
@@ -270,9 +355,10 @@ public class WalletApplication extends MultiDexApplication {
             else throw x;
         }
 
-        // make sure there is at least one recent backup
-        if (!getFileStreamPath(Constants.Files.WALLET_KEY_BACKUP_PROTOBUF).exists())
-            backupWallet();
+        if (transactionHistory != null)
+            transactionHistory.detach();
+        transactionHistory = new TransactionHistory(wallet);
+        transactionHistory.attach();
     }
 
     private void initLogging() {
@@ -350,6 +436,20 @@ public class WalletApplication extends MultiDexApplication {
         }
     }
 
+    /** Waits for the BIP39 wordlist, needed before creating a seed or checking words against it. */
+    public void ensureMnemonicCode() {
+        startupTasks.require(STARTUP_TASK_MNEMONIC_CODE);
+    }
+
+    /** Waits for the notification channels, needed before posting to them. */
+    public void ensureNotificationChannels() {
+        startupTasks.require(STARTUP_TASK_NOTIFICATION_CHANNELS);
+    }
+
+    public List<StartupTasks.TraceEntry> getStartupTrace() {
+        return startupTasks.getTrace();
+    }
+
     public Configuration getConfiguration() {
         return config;
     }
@@ -358,6 +458,10 @@ public class WalletApplication extends MultiDexApplication {
         return wallet;
     }
 
+    public TransactionHistory getTransactionHistory() {
+        return transactionHistory;
+    }
+
     private void loadWalletFromProtobuf() {
         if (walletFile.exists()) {
             FileInputStream walletStream = null;
@@ -401,11 +505,20 @@ public class WalletApplication extends MultiDexApplication {
 
             if (!wallet.getParams().equals(Constants.NETWORK_PARAMETERS))
                 throw new Error("bad wallet network parameters: " + wallet.getParams().getId());
+
+            try {
+                walletJournal.replay(wallet);
+            } catch (final IOException x) {
+                log.warn("problem replaying wallet journal", x);
+            }
         } else {
+            walletJournal.clear();
+
+            ensureMnemonicCode();
             wallet = new Wallet(Constants.NETWORK_PARAMETERS);
             wallet.addKeyChain(Constants.BIP44_PATH);
 
-            saveWallet();
+            saveWalletAndWait();
             backupWallet();
 
             config.armBackupReminder();
@@ -447,32 +560,72 @@ public class WalletApplication extends MultiDexApplication {
         }
     }
 
+    /** Gets told about every wallet save, both explicit ones and autosaves. */
+    public void setWalletSaveListener(@Nullable final WalletFiles.Listener walletSaveListener) {
+        this.walletSaveListener = walletSaveListener;
+    }
+
+    /** Saves the wallet soon, together with other saves asked for around the same time. */
     public void saveWallet() {
+        walletSaveCoordinator.requestSave();
+    }
+
+    /** Saves the wallet right away and waits for it, for when the wallet must be on disk before going on. */
+    public void saveWalletAndWait() {
         try {
-            protobufSerializeWallet(wallet);
+            walletSaveCoordinator.flush();
         } catch (final IOException x) {
             throw new RuntimeException(x);
         }
     }
 
+    public WalletSaveCoordinator getWalletSaveCoordinator() {
+        return walletSaveCoordinator;
+    }
+
+    /**
+     * Persists the exchange rate just set on the transaction by appending it to the wallet journal, which is much
+     * cheaper than saving the whole wallet. The wallet file picks it up with the next autosave.
+     */
+    public void saveExchangeRate(final Transaction tx) {
+        try {
+            walletJournal.appendExchangeRate(tx);
+            walletFiles.saveLater();
+        } catch (final IOException x) {
+            log.warn("problem appending to wallet journal, saving wallet instead", x);
+            saveWallet();
+        }
+    }
+
+    private void compactWalletJournal(final long position) {
+        try {
+            walletJournal.compact(position);
+        } catch (final IOException x) {
+            // the records are replayed again next time, which does no harm
+            log.warn("problem compacting wallet journal", x);
+        }
+    }
+
     private void protobufSerializeWallet(final Wallet wallet) throws IOException {
-        final Stopwatch watch = Stopwatch.createStarted();
+        final WalletFiles.Listener listener = walletSaveListener;
+        if (listener != null)
+            listener.onBeforeAutoSave(walletFile);
+        final long journalPosition = walletJournal.position();
         wallet.saveToFile(walletFile);
-        watch.stop();
+        compactWalletJournal(journalPosition);
+        if (listener != null)
+            listener.onAfterAutoSave(walletFile);
+    }
 
-        log.info("wallet saved to: '{}', took {}", walletFile, watch);
+    private void ensureKeyBackup() {
+        // make sure there is at least one recent backup
+        if (!getFileStreamPath(Constants.Files.WALLET_KEY_BACKUP_PROTOBUF).exists())
+            backupWallet();
     }
 
     public void backupWallet() {
         final Stopwatch watch = Stopwatch.createStarted();
-        final Protos.Wallet.Builder builder = new WalletProtobufSerializer().walletToProto(wallet).toBuilder();
-
-        // strip redundant
-        builder.clearTransaction();
-        builder.clearLastSeenBlockHash();
-        builder.setLastSeenBlockHeight(-1);
-        builder.clearLastSeenBlockTimeSecs();
-        final Protos.Wallet walletProto = builder.build();
+        final Protos.Wallet walletProto = KeyBackupSerializer.walletToKeyBackupProto(wallet);
 
         OutputStream os = null;
 
@@ -527,6 +680,7 @@ public class WalletApplication extends MultiDexApplication {
         wallet = newWallet;
         config.maybeIncrementBestChainHeightEver(newWallet.getLastBlockSeenHeight());
         afterLoadWallet();
+        ensureKeyBackup();
 
         final Intent broadcast = new Intent(ACTION_WALLET_REFERENCE_CHANGED);
         broadcast.setPackage(getPackageName());
@@ -644,6 +798,7 @@ public class WalletApplication extends MultiDexApplication {
       Replace the wallet with an new wallet as part of a wallet wipe
      */
     public void eraseAndCreateNewWallet() {
+        ensureMnemonicCode();
         Wallet newWallet = new Wallet(Constants.NETWORK_PARAMETERS);
         newWallet.addKeyChain(Constants.BIP44_PATH);
 
@@ -654,7 +809,7 @@ public class WalletApplication extends MultiDexApplication {
             walletBackupFile.delete();
 
         replaceWallet(newWallet);
-        saveWallet();
+        saveWalletAndWait();
         config.armBackupReminder();
         config.armBackupSeedReminder();
         log.info("New wallet created to replace the wiped locked wallet");
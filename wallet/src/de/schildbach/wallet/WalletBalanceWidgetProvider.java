@@ -19,6 +19,8 @@ package de.schildbach.wallet;
 
 import java.lang.reflect.Method;
 
+import javax.annotation.Nullable;
+
 import org.bitcoinj.core.Coin;
 import org.bitcoinj.utils.Fiat;
 import org.bitcoinj.utils.MonetaryFormat;
@@ -29,6 +31,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import de.schildbach.wallet.rates.ExchangeRate;
+import de.schildbach.wallet.rates.ExchangeRatesSnapshot;
 import de.schildbach.wallet.ui.RequestCoinsActivity;
 import de.schildbach.wallet.ui.SendCoinsQrActivity;
 import de.schildbach.wallet.ui.WalletActivity;
@@ -114,68 +117,80 @@ public class WalletBalanceWidgetProvider extends AppWidgetProvider {
         final Spannable balanceStr = new MonetarySpannable(btcFormat.noCode(), balance).applyMarkup(null,
                 MonetarySpannable.STANDARD_INSIGNIFICANT_SPANS);
 
+        final ExchangeRatesSnapshot exchangeRates = ExchangeRatesSnapshot.getInstance();
+        if (exchangeRates.isLoaded()) {
+            updateWidget(context, appWidgetManager, appWidgetId, appWidgetOptions, btcFormat, balance, balanceStr,
+                    exchangeRates.getRate(config.getExchangeCurrencyCode()));
+            return;
+        }
+
         new AsyncTask<Context, Void, ExchangeRate>() {
             @Override
             protected ExchangeRate doInBackground(Context... contexts) {
-                return AppDatabase.getAppDatabase().exchangeRatesDao()
-                        .getRateSync(config.getExchangeCurrencyCode());
+                return exchangeRates.getRate(config.getExchangeCurrencyCode());
             }
 
             @Override
             protected void onPostExecute(ExchangeRate exchangeRate) {
                 super.onPostExecute(exchangeRate);
-
-                final Spannable localBalanceStr;
-                if (exchangeRate != null) {
-                    org.bitcoinj.utils.ExchangeRate rate = new org.bitcoinj.utils.ExchangeRate(Coin.COIN,
-                            exchangeRate.getFiat());
-                    final Fiat localBalance = rate.coinToFiat(balance);
-                    final MonetaryFormat localFormat = Constants.LOCAL_FORMAT.code(0,
-                            PREFIX_ALMOST_EQUAL_TO + GenericUtils.currencySymbol(exchangeRate.getCurrencyCode()));
-                    final Object[] prefixSpans = new Object[] { MonetarySpannable.SMALLER_SPAN,
-                            new ForegroundColorSpan(context.getResources().getColor(R.color.fg_less_significant)) };
-                    localBalanceStr = new MonetarySpannable(localFormat, localBalance).applyMarkup(prefixSpans,
-                            MonetarySpannable.STANDARD_INSIGNIFICANT_SPANS);
-                } else {
-                    localBalanceStr = null;
-                }
-
-                final RemoteViews views = new RemoteViews(context.getPackageName(), R.layout.wallet_balance_widget_content);
-
-                final String currencyCode = btcFormat.code();
-                if (MonetaryFormat.CODE_BTC.equals(currencyCode))
-                    views.setImageViewResource(R.id.widget_wallet_prefix, R.drawable.currency_symbol_dash);
-                else if (MonetaryFormat.CODE_MBTC.equals(currencyCode))
-                    views.setImageViewResource(R.id.widget_wallet_prefix, R.drawable.currency_symbol_mdash);
-                else if (MonetaryFormat.CODE_UBTC.equals(currencyCode))
-                    views.setImageViewResource(R.id.widget_wallet_prefix, R.drawable.currency_symbol_udash);
-
-                views.setTextViewText(R.id.widget_wallet_balance_btc, balanceStr);
-                views.setViewVisibility(R.id.widget_wallet_balance_local, localBalanceStr != null ? View.VISIBLE : View.GONE);
-                views.setTextViewText(R.id.widget_wallet_balance_local, localBalanceStr);
-
-                if (appWidgetOptions != null) {
-                    final int minWidth = appWidgetOptions.getInt(AppWidgetManager.OPTION_APPWIDGET_MIN_WIDTH);
-                    views.setViewVisibility(R.id.widget_app_icon, minWidth > 400 ? View.VISIBLE : View.GONE);
-                    views.setViewVisibility(R.id.widget_button_request, minWidth > 300 ? View.VISIBLE : View.GONE);
-                    views.setViewVisibility(R.id.widget_button_send, minWidth > 300 ? View.VISIBLE : View.GONE);
-                    views.setViewVisibility(R.id.widget_button_send_qr, minWidth > 200 ? View.VISIBLE : View.GONE);
-                }
-
-                views.setOnClickPendingIntent(R.id.widget_button_balance,
-                        PendingIntent.getActivity(context, 0, new Intent(context, WalletActivity.class), 0));
-                views.setOnClickPendingIntent(R.id.widget_button_request,
-                        PendingIntent.getActivity(context, 0, new Intent(context, RequestCoinsActivity.class), 0));
-                views.setOnClickPendingIntent(R.id.widget_button_send,
-                        PendingIntent.getActivity(context, 0, new Intent(context, SendCoinsActivity.class), 0));
-                views.setOnClickPendingIntent(R.id.widget_button_send_qr,
-                        PendingIntent.getActivity(context, 0, new Intent(context, SendCoinsQrActivity.class), 0));
-
-                appWidgetManager.updateAppWidget(appWidgetId, views);
+                updateWidget(context, appWidgetManager, appWidgetId, appWidgetOptions, btcFormat, balance,
+                        balanceStr, exchangeRate);
             }
         }.execute(context);
     }
 
+    private static void updateWidget(final Context context, final AppWidgetManager appWidgetManager,
+            final int appWidgetId, final Bundle appWidgetOptions, final MonetaryFormat btcFormat, final Coin balance,
+            final Spannable balanceStr, @Nullable final ExchangeRate exchangeRate) {
+        final Spannable localBalanceStr;
+        if (exchangeRate != null) {
+            org.bitcoinj.utils.ExchangeRate rate = new org.bitcoinj.utils.ExchangeRate(Coin.COIN,
+                    exchangeRate.getFiat());
+            final Fiat localBalance = rate.coinToFiat(balance);
+            final MonetaryFormat localFormat = Constants.LOCAL_FORMAT.code(0,
+                    PREFIX_ALMOST_EQUAL_TO + GenericUtils.currencySymbol(exchangeRate.getCurrencyCode()));
+            final Object[] prefixSpans = new Object[] { MonetarySpannable.SMALLER_SPAN,
+                    new ForegroundColorSpan(context.getResources().getColor(R.color.fg_less_significant)) };
+            localBalanceStr = new MonetarySpannable(localFormat, localBalance).applyMarkup(prefixSpans,
+                    MonetarySpannable.STANDARD_INSIGNIFICANT_SPANS);
+        } else {
+            localBalanceStr = null;
+        }
+
+        final RemoteViews views = new RemoteViews(context.getPackageName(), R.layout.wallet_balance_widget_content);
+
+        final String currencyCode = btcFormat.code();
+        if (MonetaryFormat.CODE_BTC.equals(currencyCode))
+            views.setImageViewResource(R.id.widget_wallet_prefix, R.drawable.currency_symbol_dash);
+        else if (MonetaryFormat.CODE_MBTC.equals(currencyCode))
+            views.setImageViewResource(R.id.widget_wallet_prefix, R.drawable.currency_symbol_mdash);
+        else if (MonetaryFormat.CODE_UBTC.equals(currencyCode))
+            views.setImageViewResource(R.id.widget_wallet_prefix, R.drawable.currency_symbol_udash);
+
+        views.setTextViewText(R.id.widget_wallet_balance_btc, balanceStr);
+        views.setViewVisibility(R.id.widget_wallet_balance_local, localBalanceStr != null ? View.VISIBLE : View.GONE);
+        views.setTextViewText(R.id.widget_wallet_balance_local, localBalanceStr);
+
+        if (appWidgetOptions != null) {
+            final int minWidth = appWidgetOptions.getInt(AppWidgetManager.OPTION_APPWIDGET_MIN_WIDTH);
+            views.setViewVisibility(R.id.widget_app_icon, minWidth > 400 ? View.VISIBLE : View.GONE);
+            views.setViewVisibility(R.id.widget_button_request, minWidth > 300 ? View.VISIBLE : View.GONE);
+            views.setViewVisibility(R.id.widget_button_send, minWidth > 300 ? View.VISIBLE : View.GONE);
+            views.setViewVisibility(R.id.widget_button_send_qr, minWidth > 200 ? View.VISIBLE : View.GONE);
+        }
+
+        views.setOnClickPendingIntent(R.id.widget_button_balance,
+                PendingIntent.getActivity(context, 0, new Intent(context, WalletActivity.class), 0));
+        views.setOnClickPendingIntent(R.id.widget_button_request,
+                PendingIntent.getActivity(context, 0, new Intent(context, RequestCoinsActivity.class), 0));
+        views.setOnClickPendingIntent(R.id.widget_button_send,
+                PendingIntent.getActivity(context, 0, new Intent(context, SendCoinsActivity.class), 0));
+        views.setOnClickPendingIntent(R.id.widget_button_send_qr,
+                PendingIntent.getActivity(context, 0, new Intent(context, SendCoinsQrActivity.class), 0));
+
+        appWidgetManager.updateAppWidget(appWidgetId, views);
+    }
+
     private static Bundle getAppWidgetOptions(final AppWidgetManager appWidgetManager, final int appWidgetId) {
         try {
             final Method getAppWidgetOptions = AppWidgetManager.class.getMethod("getAppWidgetOptions", Integer.TYPE);
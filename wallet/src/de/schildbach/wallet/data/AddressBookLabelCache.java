@@ -0,0 +1,145 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.schildbach.wallet.data;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.Nullable;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Stopwatch;
+
+import android.content.ContentResolver;
+import android.content.Context;
+import android.database.Cursor;
+import android.net.Uri;
+
+/**
+ * In-memory copy of all address book labels, so that resolving a label doesn't cost a provider query.
+ *
+ * The table is bulk loaded on first use. {@link AddressBookProvider} passes the URIs it notifies about through
+ * {@link #onChange(Uri)} before notifying observers, so that they will never read a stale label.
+ */
+public class AddressBookLabelCache {
+    private final ContentResolver contentResolver;
+    private final Uri contentUri;
+
+    @Nullable
+    private Map<String, String> labels = null;
+    private final Set<String> staleAddresses = new HashSet<String>();
+
+    private static AddressBookLabelCache instance;
+
+    private static final Logger log = LoggerFactory.getLogger(AddressBookLabelCache.class);
+
+    private AddressBookLabelCache(final Context context) {
+        this.contentResolver = context.getContentResolver();
+        this.contentUri = AddressBookProvider.contentUri(context.getPackageName());
+    }
+
+    public static synchronized AddressBookLabelCache getInstance(final Context context) {
+        if (instance == null)
+            instance = new AddressBookLabelCache(context.getApplicationContext());
+        return instance;
+    }
+
+    @Nullable
+    public synchronized String resolveLabel(final String address) {
+        ensureLoaded();
+        if (staleAddresses.remove(address))
+            reload(address);
+        return labels.get(address);
+    }
+
+    /** Resolves many labels at once. Addresses without a label are absent from the result. */
+    public synchronized Map<String, String> resolveLabels(final Collection<String> addresses) {
+        ensureLoaded();
+        final Map<String, String> result = new HashMap<String, String>(addresses.size());
+        for (final String address : addresses) {
+            if (staleAddresses.remove(address))
+                reload(address);
+            final String label = labels.get(address);
+            if (label != null)
+                result.put(address, label);
+        }
+        return result;
+    }
+
+    /**
+     * Invalidates the label of the address the given provider URI refers to, or all labels if it doesn't refer to a
+     * single address.
+     */
+    public synchronized void onChange(final Uri uri) {
+        if (labels == null)
+            return;
+
+        final List<String> pathSegments = uri.getPathSegments();
+        if (!pathSegments.isEmpty())
+            staleAddresses.add(pathSegments.get(0));
+        else
+            labels = null;
+    }
+
+    private void ensureLoaded() {
+        if (labels != null)
+            return;
+
+        final Stopwatch watch = Stopwatch.createStarted();
+        final Map<String, String> labels = new HashMap<String, String>();
+        final Cursor cursor = contentResolver.query(contentUri,
+                new String[] { AddressBookProvider.KEY_ADDRESS, AddressBookProvider.KEY_LABEL }, null, null, null);
+        if (cursor != null) {
+            final int addressIndex = cursor.getColumnIndexOrThrow(AddressBookProvider.KEY_ADDRESS);
+            final int labelIndex = cursor.getColumnIndexOrThrow(AddressBookProvider.KEY_LABEL);
+            while (cursor.moveToNext())
+                labels.put(cursor.getString(addressIndex), cursor.getString(labelIndex));
+            cursor.close();
+        }
+        this.labels = labels;
+        staleAddresses.clear();
+        watch.stop();
+        log.info("{} address book labels loaded, took {}", labels.size(), watch);
+    }
+
+    private void reload(final String address) {
+        String label = null;
+
+        final Uri uri = contentUri.buildUpon().appendPath(address).build();
+        final Cursor cursor = contentResolver.query(uri, new String[] { AddressBookProvider.KEY_LABEL }, null, null,
+                null);
+
+        if (cursor != null) {
+            if (cursor.moveToFirst())
+                label = cursor.getString(cursor.getColumnIndexOrThrow(AddressBookProvider.KEY_LABEL));
+
+            cursor.close();
+        }
+
+        if (label != null)
+            labels.put(address, label);
+        else
+            labels.remove(address);
+    }
+}
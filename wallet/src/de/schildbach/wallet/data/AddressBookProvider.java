@@ -17,12 +17,17 @@
 
 package de.schildbach.wallet.data;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+
+import javax.annotation.Nullable;
 
 import android.content.ContentProvider;
 import android.content.ContentValues;
 import android.content.Context;
 import android.database.Cursor;
+import android.database.DatabaseUtils;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
 import android.database.sqlite.SQLiteQueryBuilder;
@@ -33,6 +38,7 @@ import android.net.Uri;
  */
 public class AddressBookProvider extends ContentProvider {
     private static final String DATABASE_TABLE = "address_book";
+    private static final String FTS_TABLE = DATABASE_TABLE + "_fts";
 
     public static final String KEY_ROWID = "_id";
     public static final String KEY_ADDRESS = "address";
@@ -47,19 +53,11 @@ public class AddressBookProvider extends ContentProvider {
     }
 
     public static String resolveLabel(final Context context, final String address) {
-        String label = null;
-
-        final Uri uri = contentUri(context.getPackageName()).buildUpon().appendPath(address).build();
-        final Cursor cursor = context.getContentResolver().query(uri, null, null, null, null);
-
-        if (cursor != null) {
-            if (cursor.moveToFirst())
-                label = cursor.getString(cursor.getColumnIndexOrThrow(AddressBookProvider.KEY_LABEL));
-
-            cursor.close();
-        }
+        return AddressBookLabelCache.getInstance(context).resolveLabel(address);
+    }
 
-        return label;
+    public static Map<String, String> resolveLabels(final Context context, final Collection<String> addresses) {
+        return AddressBookLabelCache.getInstance(context).resolveLabels(addresses);
     }
 
     private Helper helper;
@@ -83,12 +81,28 @@ public class AddressBookProvider extends ContentProvider {
         final String address = uri.getLastPathSegment();
         values.put(KEY_ADDRESS, address);
 
-        long rowId = helper.getWritableDatabase().insertOrThrow(DATABASE_TABLE, null, values);
+        // the address is unique, so adding an entry that is already there updates it rather than failing; no
+        // CONFLICT_REPLACE, as its implicit delete would bypass the FTS delete trigger
+        final SQLiteDatabase db = helper.getWritableDatabase();
+        final String[] addressArgs = new String[] { address };
+        final long rowId;
+        db.beginTransaction();
+        try {
+            if (db.update(DATABASE_TABLE, values, KEY_ADDRESS + "=?", addressArgs) > 0)
+                rowId = DatabaseUtils.longForQuery(db,
+                        "SELECT " + KEY_ROWID + " FROM " + DATABASE_TABLE + " WHERE " + KEY_ADDRESS + "=?",
+                        addressArgs);
+            else
+                rowId = db.insertOrThrow(DATABASE_TABLE, null, values);
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
 
         final Uri rowUri = contentUri(getContext().getPackageName()).buildUpon().appendPath(address)
                 .appendPath(Long.toString(rowId)).build();
 
-        getContext().getContentResolver().notifyChange(rowUri, null);
+        notifyChange(rowUri);
 
         return rowUri;
     }
@@ -104,7 +118,7 @@ public class AddressBookProvider extends ContentProvider {
                 new String[] { address });
 
         if (count > 0)
-            getContext().getContentResolver().notifyChange(uri, null);
+            notifyChange(uri);
 
         return count;
     }
@@ -121,7 +135,7 @@ public class AddressBookProvider extends ContentProvider {
                 new String[] { address });
 
         if (count > 0)
-            getContext().getContentResolver().notifyChange(uri, null);
+            notifyChange(uri);
 
         return count;
     }
@@ -157,9 +171,12 @@ public class AddressBookProvider extends ContentProvider {
             appendAddresses(qb, addresses);
             qb.appendWhere(")");
         } else if (SELECTION_QUERY.equals(originalSelection)) {
-            final String query = '%' + originalSelectionArgs[0].trim() + '%';
-            selection = KEY_ADDRESS + " LIKE ? OR " + KEY_LABEL + " LIKE ?";
-            selectionArgs = new String[] { query, query };
+            final String match = ftsPrefixMatch(originalSelectionArgs[0]);
+            if (match != null) {
+                selection = KEY_ROWID + " IN (SELECT docid FROM " + FTS_TABLE + " WHERE " + FTS_TABLE
+                        + " MATCH ?)";
+                selectionArgs = new String[] { match };
+            }
         }
 
         final Cursor cursor = qb.query(helper.getReadableDatabase(), projection, selection, selectionArgs, null, null,
@@ -170,6 +187,29 @@ public class AddressBookProvider extends ContentProvider {
         return cursor;
     }
 
+    private void notifyChange(final Uri uri) {
+        // keep the label cache coherent before anybody gets notified
+        AddressBookLabelCache.getInstance(getContext()).onChange(uri);
+        getContext().getContentResolver().notifyChange(uri, null);
+    }
+
+    /**
+     * Turns free text into an FTS query that matches rows where every word is a prefix of a word of the address or
+     * label. Returns null if there is no word to search for.
+     */
+    @Nullable
+    private static String ftsPrefixMatch(final String query) {
+        final StringBuilder match = new StringBuilder();
+        for (final String word : query.trim().split("[^\\p{L}\\p{N}]+")) {
+            if (word.isEmpty())
+                continue;
+            if (match.length() > 0)
+                match.append(' ');
+            match.append(word).append('*');
+        }
+        return match.length() > 0 ? match.toString() : null;
+    }
+
     private static void appendAddresses(final SQLiteQueryBuilder qb, final String[] addresses) {
         for (final String address : addresses) {
             qb.appendWhereEscapeString(address.trim());
@@ -180,13 +220,32 @@ public class AddressBookProvider extends ContentProvider {
 
     private static class Helper extends SQLiteOpenHelper {
         private static final String DATABASE_NAME = "address_book";
-        private static final int DATABASE_VERSION = 1;
+        private static final int DATABASE_VERSION = 2;
 
         private static final String DATABASE_CREATE = "CREATE TABLE " + DATABASE_TABLE + " (" //
                 + KEY_ROWID + " INTEGER PRIMARY KEY AUTOINCREMENT, " //
                 + KEY_ADDRESS + " TEXT NOT NULL, " //
                 + KEY_LABEL + " TEXT NULL);";
 
+        private static final String INDEX_ADDRESS_CREATE = "CREATE UNIQUE INDEX " + DATABASE_TABLE + "_"
+                + KEY_ADDRESS + " ON " + DATABASE_TABLE + " (" + KEY_ADDRESS + ");";
+
+        // external content FTS table, kept in sync with the address book by triggers
+        private static final String FTS_CREATE = "CREATE VIRTUAL TABLE " + FTS_TABLE + " USING fts4(content=\""
+                + DATABASE_TABLE + "\", " + KEY_ADDRESS + ", " + KEY_LABEL + ");";
+
+        private static final String[] FTS_TRIGGERS_CREATE = { //
+                "CREATE TRIGGER " + DATABASE_TABLE + "_bu BEFORE UPDATE ON " + DATABASE_TABLE + " BEGIN DELETE FROM "
+                        + FTS_TABLE + " WHERE docid=old." + KEY_ROWID + "; END;", //
+                "CREATE TRIGGER " + DATABASE_TABLE + "_bd BEFORE DELETE ON " + DATABASE_TABLE + " BEGIN DELETE FROM "
+                        + FTS_TABLE + " WHERE docid=old." + KEY_ROWID + "; END;", //
+                "CREATE TRIGGER " + DATABASE_TABLE + "_au AFTER UPDATE ON " + DATABASE_TABLE + " BEGIN INSERT INTO "
+                        + FTS_TABLE + "(docid, " + KEY_ADDRESS + ", " + KEY_LABEL + ") VALUES(new." + KEY_ROWID
+                        + ", new." + KEY_ADDRESS + ", new." + KEY_LABEL + "); END;", //
+                "CREATE TRIGGER " + DATABASE_TABLE + "_ai AFTER INSERT ON " + DATABASE_TABLE + " BEGIN INSERT INTO "
+                        + FTS_TABLE + "(docid, " + KEY_ADDRESS + ", " + KEY_LABEL + ") VALUES(new." + KEY_ROWID
+                        + ", new." + KEY_ADDRESS + ", new." + KEY_LABEL + "); END;" };
+
         public Helper(final Context context) {
             super(context, DATABASE_NAME, null, DATABASE_VERSION);
         }
@@ -194,6 +253,14 @@ public class AddressBookProvider extends ContentProvider {
         @Override
         public void onCreate(final SQLiteDatabase db) {
             db.execSQL(DATABASE_CREATE);
+            createIndexes(db);
+        }
+
+        private static void createIndexes(final SQLiteDatabase db) {
+            db.execSQL(INDEX_ADDRESS_CREATE);
+            db.execSQL(FTS_CREATE);
+            for (final String trigger : FTS_TRIGGERS_CREATE)
+                db.execSQL(trigger);
         }
 
         @Override
@@ -211,6 +278,12 @@ public class AddressBookProvider extends ContentProvider {
 
         private void upgrade(final SQLiteDatabase db, final int oldVersion) {
             if (oldVersion == 1) {
+                // keep only the latest entry per address, so the unique index can be created
+                db.execSQL("DELETE FROM " + DATABASE_TABLE + " WHERE " + KEY_ROWID + " NOT IN (SELECT MAX("
+                        + KEY_ROWID + ") FROM " + DATABASE_TABLE + " GROUP BY " + KEY_ADDRESS + ");");
+                createIndexes(db);
+                db.execSQL("INSERT INTO " + FTS_TABLE + "(" + FTS_TABLE + ") VALUES('rebuild');");
+            } else if (oldVersion == 2) {
                 // future
             } else {
                 throw new UnsupportedOperationException("old=" + oldVersion);
@@ -0,0 +1,287 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.schildbach.wallet.data;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import javax.annotation.Nullable;
+
+import org.bitcoinj.core.Coin;
+import org.bitcoinj.core.Sha256Hash;
+import org.bitcoinj.core.Transaction;
+import org.bitcoinj.core.Transaction.Purpose;
+import org.bitcoinj.core.TransactionConfidence.ConfidenceType;
+import org.bitcoinj.core.listeners.TransactionConfidenceEventListener;
+import org.bitcoinj.utils.Threading;
+import org.bitcoinj.wallet.Wallet;
+import org.bitcoinj.wallet.listeners.WalletCoinsReceivedEventListener;
+import org.bitcoinj.wallet.listeners.WalletCoinsSentEventListener;
+import org.bitcoinj.wallet.listeners.WalletReorganizeEventListener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Stopwatch;
+
+import de.schildbach.wallet.util.WalletUtils;
+
+/**
+ * Sorted index of all wallet transactions, kept up to date from wallet events rather than rebuilt on every change.
+ *
+ * Entries are ordered pending first, then by descending update time, then by hash. The index is built lazily on the
+ * first read and afterwards only touched for the transactions that events report. A reorganize invalidates it.
+ */
+public class TransactionHistory implements WalletCoinsReceivedEventListener, WalletCoinsSentEventListener,
+        WalletReorganizeEventListener, TransactionConfidenceEventListener {
+    private final Wallet wallet;
+
+    private final TreeSet<Entry> sorted = new TreeSet<Entry>();
+    private final Map<Sha256Hash, Entry> entries = new HashMap<Sha256Hash, Entry>();
+    private boolean built = false;
+    @Nullable
+    private Map<Sha256Hash, Entry> updatedWhileBuilding = null;
+    private long version = 0;
+
+    private List<Transaction> allView, receivedView, sentView;
+    private long allViewVersion = -1, receivedViewVersion = -1, sentViewVersion = -1;
+
+    private static final Logger log = LoggerFactory.getLogger(TransactionHistory.class);
+
+    public TransactionHistory(final Wallet wallet) {
+        this.wallet = wallet;
+    }
+
+    public void attach() {
+        wallet.addCoinsReceivedEventListener(Threading.SAME_THREAD, this);
+        wallet.addCoinsSentEventListener(Threading.SAME_THREAD, this);
+        wallet.addReorganizeEventListener(Threading.SAME_THREAD, this);
+        wallet.addTransactionConfidenceEventListener(Threading.SAME_THREAD, this);
+    }
+
+    public void detach() {
+        wallet.removeTransactionConfidenceEventListener(this);
+        wallet.removeReorganizeEventListener(this);
+        wallet.removeCoinsSentEventListener(this);
+        wallet.removeCoinsReceivedEventListener(this);
+        invalidate();
+    }
+
+    /** Drops the index, so that the next read rebuilds it from the wallet. */
+    public synchronized void invalidate() {
+        WalletUtils.invalidateTransactionFacts();
+        built = false;
+        updatedWhileBuilding = null;
+        sorted.clear();
+        entries.clear();
+        version++;
+        notifyAll();
+    }
+
+    /** Increments whenever the contents or the order of the index change. */
+    public synchronized long getVersion() {
+        return version;
+    }
+
+    public List<Transaction> getAll() {
+        ensureBuilt();
+        synchronized (this) {
+            if (allViewVersion != version) {
+                allView = view(null);
+                allViewVersion = version;
+            }
+            return allView;
+        }
+    }
+
+    public List<Transaction> getReceived() {
+        ensureBuilt();
+        synchronized (this) {
+            if (receivedViewVersion != version) {
+                receivedView = view(false);
+                receivedViewVersion = version;
+            }
+            return receivedView;
+        }
+    }
+
+    public List<Transaction> getSent() {
+        ensureBuilt();
+        synchronized (this) {
+            if (sentViewVersion != version) {
+                sentView = view(true);
+                sentViewVersion = version;
+            }
+            return sentView;
+        }
+    }
+
+    private List<Transaction> view(@Nullable final Boolean sent) {
+        final List<Transaction> view = new ArrayList<Transaction>(sorted.size());
+        for (final Entry entry : sorted)
+            if (sent == null || (entry.sent == sent && !entry.internal))
+                view.add(entry.tx);
+        return Collections.unmodifiableList(view);
+    }
+
+    private void ensureBuilt() {
+        final Map<Sha256Hash, Entry> updated;
+        synchronized (this) {
+            while (updatedWhileBuilding != null) {
+                try {
+                    wait(); // another thread is building
+                } catch (final InterruptedException x) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+            if (built)
+                return;
+            updated = updatedWhileBuilding = new HashMap<Sha256Hash, Entry>();
+        }
+
+        // Never call into the wallet while holding our own monitor: wallet listeners are invoked with the wallet
+        // lock held and then take our monitor, so the opposite order could deadlock.
+        final Stopwatch watch = Stopwatch.createStarted();
+        final Set<Transaction> transactions = wallet.getTransactions(true);
+        final List<Entry> fresh = new ArrayList<Entry>(transactions.size());
+        for (final Transaction tx : transactions)
+            fresh.add(new Entry(tx, WalletUtils.getTransactionFacts(tx, wallet).value));
+
+        synchronized (this) {
+            if (updatedWhileBuilding != updated)
+                return; // invalidated during the scan, waiters will rebuild
+            sorted.clear();
+            entries.clear();
+            for (final Entry entry : fresh)
+                put(entry);
+            // events that arrived during the scan carry newer state
+            for (final Entry entry : updated.values())
+                put(entry);
+            updatedWhileBuilding = null;
+            built = true;
+            version++;
+            notifyAll();
+        }
+        watch.stop();
+        log.info("indexed {} transactions, took {}", transactions.size(), watch);
+    }
+
+    private void put(final Entry entry) {
+        final Entry old = entries.put(entry.tx.getHash(), entry);
+        if (old != null)
+            sorted.remove(old);
+        sorted.add(entry);
+    }
+
+    private void update(final Transaction tx, final boolean valueChanged) {
+        final Sha256Hash hash = tx.getHash();
+        if (valueChanged)
+            WalletUtils.invalidateTransactionFacts(hash);
+        final Entry old;
+        synchronized (this) {
+            if (!built && updatedWhileBuilding == null)
+                return;
+            old = updatedWhileBuilding != null ? updatedWhileBuilding.get(hash) : entries.get(hash);
+            if (old != null && !valueChanged && old.hasSameKey(tx))
+                return;
+        }
+
+        // a confidence change never alters the direction, so reuse the value we have
+        final Coin value = old != null && !valueChanged ? old.value
+                : WalletUtils.getTransactionFacts(tx, wallet).value;
+        final Entry entry = new Entry(tx, value);
+
+        synchronized (this) {
+            if (updatedWhileBuilding != null) {
+                updatedWhileBuilding.put(hash, entry);
+            } else if (built) {
+                put(entry);
+                version++;
+            }
+        }
+    }
+
+    @Override
+    public void onCoinsReceived(final Wallet wallet, final Transaction tx, final Coin prevBalance,
+            final Coin newBalance) {
+        update(tx, true);
+    }
+
+    @Override
+    public void onCoinsSent(final Wallet wallet, final Transaction tx, final Coin prevBalance, final Coin newBalance) {
+        update(tx, true);
+    }
+
+    @Override
+    public void onTransactionConfidenceChanged(final Wallet wallet, final Transaction tx) {
+        update(tx, false);
+    }
+
+    @Override
+    public void onReorganize(final Wallet wallet) {
+        invalidate();
+    }
+
+    private static final class Entry implements Comparable<Entry> {
+        public final Transaction tx;
+        public final Coin value;
+        public final boolean pending;
+        public final long updateTime;
+        public final boolean sent;
+        public final boolean internal;
+
+        public Entry(final Transaction tx, final Coin value) {
+            this.tx = tx;
+            this.value = value;
+            this.pending = isPending(tx);
+            this.updateTime = updateTime(tx);
+            this.sent = value.signum() < 0;
+            this.internal = tx.getPurpose() == Purpose.KEY_ROTATION;
+        }
+
+        public boolean hasSameKey(final Transaction tx) {
+            return pending == isPending(tx) && updateTime == updateTime(tx);
+        }
+
+        @Override
+        public int compareTo(final Entry other) {
+            if (pending != other.pending)
+                return pending ? -1 : 1;
+
+            if (updateTime != other.updateTime)
+                return updateTime > other.updateTime ? -1 : 1;
+
+            return tx.getHash().compareTo(other.tx.getHash());
+        }
+
+        private static boolean isPending(final Transaction tx) {
+            return tx.getConfidence().getConfidenceType() == ConfidenceType.PENDING;
+        }
+
+        private static long updateTime(final Transaction tx) {
+            final Date updateTime = tx.getUpdateTime();
+            return updateTime != null ? updateTime.getTime() : 0;
+        }
+    }
+}
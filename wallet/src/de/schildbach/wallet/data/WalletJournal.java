@@ -0,0 +1,279 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.schildbach.wallet.data;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+import org.bitcoinj.core.Coin;
+import org.bitcoinj.core.Sha256Hash;
+import org.bitcoinj.core.Transaction;
+import org.bitcoinj.utils.ExchangeRate;
+import org.bitcoinj.utils.ContextPropagatingThreadFactory;
+import org.bitcoinj.utils.Fiat;
+import org.bitcoinj.wallet.Wallet;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.io.ByteStreams;
+
+/**
+ * Append-only log of the changes the app makes to transactions of the wallet, so that they don't need a full wallet
+ * save each. The log is replayed onto the wallet after loading it and compacted away once a full save has picked its
+ * records up: take the {@link #position()} before the save and pass it to {@link #compact(long)} after.
+ *
+ * Every record carries a checksum. A torn record at the end, left by a crash during an append, is dropped.
+ *
+ * Appends are synced to disk in groups: the first append after a sync schedules the next one, which covers all records
+ * appended until then. A crash of the app loses nothing, as the records have been written already. Only a crash of
+ * the device can lose the records of the last sync delay.
+ */
+public final class WalletJournal {
+    private final File file;
+    private final long syncDelayMs;
+    private final ScheduledExecutorService executor = Executors
+            .newSingleThreadScheduledExecutor(new ContextPropagatingThreadFactory("wallet journal"));
+    /** bytes compacted away so far, so that positions stay valid across compactions */
+    private long compacted = 0;
+    private boolean syncPending = false;
+
+    private static final byte TYPE_EXCHANGE_RATE = 1;
+    private static final int MAX_RECORD_LENGTH = 1024;
+
+    private static final Logger log = LoggerFactory.getLogger(WalletJournal.class);
+
+    static final class Entry {
+        final Sha256Hash txHash;
+        final ExchangeRate exchangeRate;
+
+        Entry(final Sha256Hash txHash, final ExchangeRate exchangeRate) {
+            this.txHash = txHash;
+            this.exchangeRate = exchangeRate;
+        }
+    }
+
+    /**
+     * @param syncDelayMs
+     *            time after an append until the records appended so far are synced to disk
+     */
+    public WalletJournal(final File file, final long syncDelayMs) {
+        this.file = file;
+        this.syncDelayMs = syncDelayMs;
+    }
+
+    /**
+     * Records the exchange rate of the transaction, which has to be set. Returns once the record is written, it is
+     * synced to disk with the next group of records.
+     */
+    public synchronized void appendExchangeRate(final Transaction tx) throws IOException {
+        final ExchangeRate exchangeRate = tx.getExchangeRate();
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        final DataOutputStream payload = new DataOutputStream(bytes);
+        payload.writeByte(TYPE_EXCHANGE_RATE);
+        payload.write(tx.getHash().getBytes());
+        payload.writeUTF(exchangeRate.fiat.currencyCode);
+        payload.writeLong(exchangeRate.coin.value);
+        payload.writeLong(exchangeRate.fiat.value);
+        payload.flush();
+
+        final CRC32 crc = new CRC32();
+        crc.update(bytes.toByteArray());
+        final FileOutputStream os = new FileOutputStream(file, true);
+        try {
+            final DataOutputStream record = new DataOutputStream(os);
+            record.writeInt(bytes.size());
+            bytes.writeTo(record);
+            record.writeInt((int) crc.getValue());
+            record.flush();
+        } finally {
+            os.close();
+        }
+
+        if (!syncPending) {
+            syncPending = true;
+            executor.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        sync();
+                    } catch (final IOException x) {
+                        log.warn("problem syncing '" + file + "'", x);
+                    }
+                }
+            }, syncDelayMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /** Syncs all records appended so far to disk. */
+    public void sync() throws IOException {
+        final FileOutputStream os;
+        synchronized (this) {
+            syncPending = false;
+            if (!file.exists())
+                return;
+            os = new FileOutputStream(file, true);
+        }
+        // outside the lock, so that appends don't wait for the disk
+        try {
+            os.getFD().sync();
+        } finally {
+            os.close();
+        }
+    }
+
+    /** Applies the records to the transactions of the wallet that don't have the respective data yet. */
+    public synchronized int replay(final Wallet wallet) throws IOException {
+        int applied = 0;
+        for (final Entry entry : read()) {
+            final Transaction tx = wallet.getTransaction(entry.txHash);
+            if (tx != null && tx.getExchangeRate() == null) {
+                tx.setExchangeRate(entry.exchangeRate);
+                applied++;
+            }
+        }
+        if (applied > 0)
+            log.info("replayed {} records from '{}'", applied, file);
+        return applied;
+    }
+
+    /** Reads all intact records, cutting off a torn one at the end. */
+    synchronized List<Entry> read() throws IOException {
+        final List<Entry> entries = new ArrayList<Entry>();
+        if (!file.exists())
+            return entries;
+
+        long intact = 0;
+        final DataInputStream is = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+        try {
+            while (true) {
+                final int length;
+                try {
+                    length = is.readInt();
+                } catch (final EOFException x) {
+                    break;
+                }
+                if (length <= 0 || length > MAX_RECORD_LENGTH)
+                    break;
+                final byte[] payload = new byte[length];
+                final int crc;
+                try {
+                    is.readFully(payload);
+                    crc = is.readInt();
+                } catch (final EOFException x) {
+                    break;
+                }
+                final CRC32 expectedCrc = new CRC32();
+                expectedCrc.update(payload);
+                if (crc != (int) expectedCrc.getValue())
+                    break;
+
+                final Entry entry = parse(payload);
+                if (entry != null)
+                    entries.add(entry);
+                intact += 4 + length + 4;
+            }
+        } finally {
+            is.close();
+        }
+
+        if (intact < file.length()) {
+            log.warn("dropping {} bytes of torn record at the end of '{}'", file.length() - intact, file);
+            final RandomAccessFile raf = new RandomAccessFile(file, "rw");
+            try {
+                raf.setLength(intact);
+            } finally {
+                raf.close();
+            }
+        }
+        return entries;
+    }
+
+    private static Entry parse(final byte[] payload) throws IOException {
+        final DataInputStream is = new DataInputStream(new ByteArrayInputStream(payload));
+        final byte type = is.readByte();
+        if (type != TYPE_EXCHANGE_RATE) {
+            log.info("skipping record of unknown type {}", type);
+            return null;
+        }
+        final byte[] hash = new byte[Sha256Hash.LENGTH];
+        is.readFully(hash);
+        final String currencyCode = is.readUTF();
+        final Coin coin = Coin.valueOf(is.readLong());
+        final Fiat fiat = Fiat.valueOf(currencyCode, is.readLong());
+        return new Entry(Sha256Hash.wrap(hash), new ExchangeRate(coin, fiat));
+    }
+
+    /** Position after the last record, to be passed to {@link #compact(long)} once a full save has completed. */
+    public synchronized long position() {
+        return compacted + file.length();
+    }
+
+    /** Drops the records before the position, which a full wallet save has made redundant. */
+    public synchronized void compact(final long position) throws IOException {
+        final long drop = position - compacted;
+        if (drop <= 0)
+            return;
+        final long length = file.length();
+        if (drop >= length) {
+            if (length > 0 && !file.delete())
+                throw new IOException("cannot delete " + file);
+        } else {
+            // records were appended during the save, keep them
+            final File tempFile = new File(file.getParentFile(), file.getName() + ".compacting");
+            final InputStream is = new FileInputStream(file);
+            try {
+                ByteStreams.skipFully(is, drop);
+                final FileOutputStream os = new FileOutputStream(tempFile);
+                try {
+                    ByteStreams.copy(is, os);
+                    // the kept records were already reported as written, they must survive the rename
+                    os.getFD().sync();
+                } finally {
+                    os.close();
+                }
+            } finally {
+                is.close();
+            }
+            if (!tempFile.renameTo(file))
+                throw new IOException("cannot rename " + tempFile + " to " + file);
+        }
+        compacted = position;
+    }
+
+    /** Forgets all records, for when the wallet they belong to is replaced. */
+    public synchronized void clear() {
+        compacted += file.length();
+        file.delete();
+    }
+}
@@ -0,0 +1,161 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.schildbach.wallet.data;
+
+import java.io.IOException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.bitcoinj.utils.ContextPropagatingThreadFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.util.concurrent.Uninterruptibles;
+
+/**
+ * Funnels the wallet saves the app asks for through one thread. Requests within the window after the first one are
+ * collapsed into a single save, and there is never more than one save of this coordinator in flight. Shutdown paths
+ * use {@link #flush()} to save right away and wait for it.
+ *
+ * A requested save that fails is logged and retried after the retry delay, until a save succeeds.
+ *
+ * Latency and size of every save, including the autosaves of the wallet reported via {@link #recordSave(long, long)},
+ * are kept as metrics.
+ */
+public final class WalletSaveCoordinator {
+    private final Saver saver;
+    private final long windowMs;
+    private final long retryDelayMs;
+    private final ScheduledExecutorService executor = Executors
+            .newSingleThreadScheduledExecutor(new ContextPropagatingThreadFactory("wallet save"));
+    private final AtomicBoolean pending = new AtomicBoolean();
+
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong saves = new AtomicLong();
+    private final AtomicLong bytesWritten = new AtomicLong();
+    private final AtomicLong lastLatencyMs = new AtomicLong();
+    private final AtomicLong maxLatencyMs = new AtomicLong();
+
+    private static final Logger log = LoggerFactory.getLogger(WalletSaveCoordinator.class);
+
+    public interface Saver {
+        /** Writes the wallet and returns the number of bytes written. */
+        long save() throws IOException;
+    }
+
+    /**
+     * @param windowMs
+     *            time after a request until the save, collecting further requests
+     * @param retryDelayMs
+     *            time after a failed requested save until it is tried again
+     */
+    public WalletSaveCoordinator(final Saver saver, final long windowMs, final long retryDelayMs) {
+        this.saver = saver;
+        this.windowMs = windowMs;
+        this.retryDelayMs = retryDelayMs;
+    }
+
+    /** Saves within the window, together with any other requests made until then. */
+    public void requestSave() {
+        requests.incrementAndGet();
+        if (pending.compareAndSet(false, true))
+            executor.schedule(requestedSaveTask, windowMs, TimeUnit.MILLISECONDS);
+    }
+
+    /** Saves right away, taking any pending request with it, and waits for the save to complete. */
+    public void flush() throws IOException {
+        requests.incrementAndGet();
+        pending.set(true);
+        try {
+            Uninterruptibles.getUninterruptibly(executor.submit(saveTask));
+        } catch (final ExecutionException x) {
+            final Throwable cause = x.getCause();
+            if (cause instanceof IOException)
+                throw (IOException) cause;
+            if (cause instanceof RuntimeException)
+                throw (RuntimeException) cause;
+            throw new RuntimeException(cause);
+        }
+    }
+
+    private final Runnable requestedSaveTask = new Runnable() {
+        @Override
+        public void run() {
+            try {
+                saveTask.call();
+            } catch (final Exception x) {
+                log.error("problem saving wallet, retrying in " + retryDelayMs + " ms", x);
+                // unless a request or flush has armed a save already
+                if (pending.compareAndSet(false, true))
+                    executor.schedule(requestedSaveTask, retryDelayMs, TimeUnit.MILLISECONDS);
+            }
+        }
+    };
+
+    private final Callable<Void> saveTask = new Callable<Void>() {
+        @Override
+        public Void call() throws IOException {
+            // a flush may have taken the pending request already
+            if (!pending.getAndSet(false))
+                return null;
+            final long start = System.currentTimeMillis();
+            final long bytes = saver.save();
+            recordSave(System.currentTimeMillis() - start, bytes);
+            return null;
+        }
+    };
+
+    /** Counts a save into the metrics, also for saves that didn't go through this coordinator. */
+    public void recordSave(final long latencyMs, final long bytes) {
+        final long count = saves.incrementAndGet();
+        bytesWritten.addAndGet(bytes);
+        lastLatencyMs.set(latencyMs);
+        long max;
+        do {
+            max = maxLatencyMs.get();
+        } while (latencyMs > max && !maxLatencyMs.compareAndSet(max, latencyMs));
+        log.info("wallet save #{}: {} bytes, took {} ms, {} requests so far", count, bytes, latencyMs,
+                requests.get());
+    }
+
+    /** Number of saves asked for. The difference to {@link #getSaveCount()} is what got collapsed. */
+    public long getRequestCount() {
+        return requests.get();
+    }
+
+    public long getSaveCount() {
+        return saves.get();
+    }
+
+    public long getBytesWritten() {
+        return bytesWritten.get();
+    }
+
+    public long getLastLatencyMs() {
+        return lastLatencyMs.get();
+    }
+
+    public long getMaxLatencyMs() {
+        return maxLatencyMs.get();
+    }
+}
@@ -5,6 +5,7 @@ import com.squareup.moshi.Moshi;
 import java.io.IOException;
 import java.util.List;
 
+import okhttp3.OkHttpClient;
 import retrofit2.Call;
 import retrofit2.Response;
 import retrofit2.converter.moshi.MoshiConverterFactory;
@@ -28,14 +29,22 @@ public class BitcoinAverageClient extends RetrofitClient {
 
     private BitcoinAverageClient(String baseUrl) {
         super(baseUrl);
+        init();
+    }
+
+    BitcoinAverageClient(String baseUrl, OkHttpClient.Builder clientBuilder) {
+        super(baseUrl, clientBuilder);
+        init();
+    }
 
+    private void init() {
         Moshi moshi = moshiBuilder.add(new BitcoinAverageRateAdapter()).build();
         retrofit = retrofitBuilder.addConverterFactory(MoshiConverterFactory.create(moshi)).build();
         service = retrofit.create(BitcoinAverageService.class);
     }
 
     public Response<List<ExchangeRate>> getGlobalIndices() throws IOException {
-        return service.getGlobalIndices().execute();
+        return CallGroup.execute(service.getGlobalIndices());
     }
 
     public interface BitcoinAverageService {
@@ -32,12 +32,14 @@ public class BitcoinAverageRateAdapter {
                         if (LEGACY_VENEZUELAN_CURRENCY.equalsIgnoreCase(currencyCode)) {
                             currencyCode = CURRENT_VENEZUELAN_CURRENCY;
                         }
-                        rates.add(new ExchangeRate(currencyCode, rate));
+                        ExchangeRateListMoshiAdapter.addRate(rates, currencyCode, rate);
                     } else {
                         jsonReader.skipValue();
                     }
                 }
                 jsonReader.endObject();
+            } else {
+                jsonReader.skipValue();
             }
         }
         jsonReader.endObject();
@@ -0,0 +1,81 @@
+package de.schildbach.wallet.rates;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+import retrofit2.Call;
+import retrofit2.Response;
+
+/**
+ * The HTTP calls made on behalf of one rate request, so that they can be cancelled when the request is abandoned.
+ * Interrupting a thread doesn't abort a blocking {@link Call#execute()}, but cancelling the call does, and releases
+ * its connection right away.
+ *
+ * Clients execute their calls with {@link #execute(Call)}, which adds them to the group whose {@link #run(Callable)}
+ * the current thread is in. A group created inside another one is cancelled together with it.
+ */
+class CallGroup {
+
+    private static final ThreadLocal<CallGroup> current = new ThreadLocal<>();
+
+    private final List<Call<?>> calls = new ArrayList<>();
+    private final List<CallGroup> children = new ArrayList<>();
+    private boolean cancelled = false;
+
+    CallGroup() {
+        CallGroup parent = current.get();
+        if (parent != null) {
+            parent.addChild(this);
+        }
+    }
+
+    /** Runs the body on the calling thread, with every call it executes added to this group. */
+    <T> T run(Callable<T> body) throws Exception {
+        CallGroup outer = current.get();
+        current.set(this);
+        try {
+            return body.call();
+        } finally {
+            current.set(outer);
+        }
+    }
+
+    static <T> Response<T> execute(Call<T> call) throws IOException {
+        CallGroup group = current.get();
+        if (group != null) {
+            group.add(call);
+        }
+        return call.execute();
+    }
+
+    synchronized void cancel() {
+        cancelled = true;
+        for (Call<?> call : calls) {
+            call.cancel();
+        }
+        for (CallGroup child : children) {
+            child.cancel();
+        }
+    }
+
+    synchronized boolean isCancelled() {
+        return cancelled;
+    }
+
+    private synchronized void add(Call<?> call) {
+        // makes execute() fail right away
+        if (cancelled) {
+            call.cancel();
+        }
+        calls.add(call);
+    }
+
+    private synchronized void addChild(CallGroup child) {
+        if (cancelled) {
+            child.cancel();
+        }
+        children.add(child);
+    }
+}
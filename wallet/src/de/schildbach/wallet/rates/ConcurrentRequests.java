@@ -0,0 +1,104 @@
+package de.schildbach.wallet.rates;
+
+import android.support.annotation.Nullable;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Runs the independent sub-requests of a composite rate provider at the same time, all bound by one deadline.
+ *
+ * Submit every request first, then collect the results with {@link #get(Future)} for required inputs or
+ * {@link #getOptional(Future)} for optional ones, and finally call {@link #cancelAll()} to abandon whatever is left.
+ * Every request runs in its own {@link CallGroup}, so that abandoning it cancels its HTTP calls. When created inside a
+ * call group, like the one of a hedged attempt, the requests are cancelled together with that.
+ */
+class ConcurrentRequests {
+
+    private static final Logger log = LoggerFactory.getLogger(ConcurrentRequests.class);
+
+    private static final int MAX_THREADS = 8;
+    private static final ExecutorService executor;
+
+    static {
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(MAX_THREADS, MAX_THREADS, 30, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>());
+        pool.allowCoreThreadTimeOut(true);
+        executor = pool;
+    }
+
+    private final long deadline;
+    private final List<Future<?>> futures = new ArrayList<>();
+    private final List<CallGroup> callGroups = new ArrayList<>();
+
+    ConcurrentRequests(long timeout, TimeUnit unit) {
+        this.deadline = System.currentTimeMillis() + unit.toMillis(timeout);
+    }
+
+    <T> Future<T> submit(final Callable<T> request) {
+        final CallGroup callGroup = new CallGroup();
+        callGroups.add(callGroup);
+        Future<T> future = executor.submit(new Callable<T>() {
+            @Override
+            public T call() throws Exception {
+                return callGroup.run(request);
+            }
+        });
+        futures.add(future);
+        return future;
+    }
+
+    /**
+     * Waits for a required input until the shared deadline.
+     *
+     * @throws Exception the failure of the request, or a {@link TimeoutException} if the deadline passed
+     */
+    <T> T get(Future<T> future) throws Exception {
+        try {
+            return future.get(Math.max(0, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+        } catch (ExecutionException x) {
+            Throwable cause = x.getCause();
+            if (cause instanceof Exception) {
+                throw (Exception) cause;
+            }
+            throw x;
+        }
+    }
+
+    /**
+     * Waits for an optional input until the shared deadline.
+     *
+     * @return the result, or null if the request failed or the deadline passed
+     */
+    @Nullable
+    <T> T getOptional(Future<T> future) throws InterruptedException {
+        try {
+            return get(future);
+        } catch (InterruptedException x) {
+            throw x;
+        } catch (Exception x) {
+            log.info("optional rate input unavailable: {}", x.toString());
+            return null;
+        }
+    }
+
+    void cancelAll() {
+        for (Future<?> future : futures) {
+            future.cancel(true);
+        }
+        for (CallGroup callGroup : callGroups) {
+            callGroup.cancel();
+        }
+    }
+}
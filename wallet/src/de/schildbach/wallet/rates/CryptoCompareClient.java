@@ -6,6 +6,7 @@ import org.dash.wallet.common.data.BigDecimalAdapter;
 
 import java.io.IOException;
 
+import okhttp3.OkHttpClient;
 import retrofit2.Call;
 import retrofit2.Response;
 import retrofit2.converter.moshi.MoshiConverterFactory;
@@ -29,7 +30,15 @@ public class CryptoCompareClient extends RetrofitClient {
 
     private CryptoCompareClient(String baseUrl) {
         super(baseUrl);
+        init();
+    }
+
+    CryptoCompareClient(String baseUrl, OkHttpClient.Builder clientBuilder) {
+        super(baseUrl, clientBuilder);
+        init();
+    }
 
+    private void init() {
         Moshi moshi = moshiBuilder.add(new BigDecimalAdapter())
                 .add(new CryptoCompareDashBtcRateAdapter()).build();
         retrofit = retrofitBuilder.addConverterFactory(MoshiConverterFactory.create(moshi)).build();
@@ -37,11 +46,11 @@ public class CryptoCompareClient extends RetrofitClient {
     }
 
     public Response<Rate> getDashCustomAverage() throws IOException {
-        return service.getDashCustomAverage().execute();
+        return CallGroup.execute(service.getDashCustomAverage());
     }
 
     public Response<CryptoCompareVesBtcRate> getVESBTCRate() throws IOException {
-        return service.getVESBTCRate().execute();
+        return CallGroup.execute(service.getVESBTCRate());
     }
 
     private interface CryptoCompareService {
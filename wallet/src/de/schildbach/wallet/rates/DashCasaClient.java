@@ -6,6 +6,7 @@ import org.dash.wallet.common.data.BigDecimalAdapter;
 
 import java.io.IOException;
 
+import okhttp3.OkHttpClient;
 import retrofit2.Call;
 import retrofit2.Response;
 import retrofit2.converter.moshi.MoshiConverterFactory;
@@ -28,14 +29,22 @@ public class DashCasaClient extends RetrofitClient {
 
     private DashCasaClient(String baseUrl) {
         super(baseUrl);
+        init();
+    }
+
+    DashCasaClient(String baseUrl, OkHttpClient.Builder clientBuilder) {
+        super(baseUrl, clientBuilder);
+        init();
+    }
 
+    private void init() {
         Moshi moshi = moshiBuilder.add(new BigDecimalAdapter()).build();
         retrofit = retrofitBuilder.addConverterFactory(MoshiConverterFactory.create(moshi)).build();
         service = retrofit.create(DashCasaService.class);
     }
 
     public Response<DashCasaResponse> getRates() throws IOException {
-        return service.getRates().execute();
+        return CallGroup.execute(service.getRates());
     }
 
     private interface DashCasaService {
@@ -4,6 +4,7 @@ import com.squareup.moshi.Moshi;
 
 import java.io.IOException;
 
+import okhttp3.OkHttpClient;
 import retrofit2.Call;
 import retrofit2.Response;
 import retrofit2.converter.moshi.MoshiConverterFactory;
@@ -27,14 +28,22 @@ public class DashCentralClient extends RetrofitClient {
 
     private DashCentralClient(String baseUrl) {
         super(baseUrl);
+        init();
+    }
+
+    DashCentralClient(String baseUrl, OkHttpClient.Builder clientBuilder) {
+        super(baseUrl, clientBuilder);
+        init();
+    }
 
+    private void init() {
         Moshi moshi = moshiBuilder.add(new DashCentralRateAdapter()).build();
         retrofit = retrofitBuilder.addConverterFactory(MoshiConverterFactory.create(moshi)).build();
         service = retrofit.create(DashCentralService.class);
     }
 
     public Response<Rate> getDashBtcPrice() throws IOException {
-        return service.getDashBtcPrice().execute();
+        return CallGroup.execute(service.getDashBtcPrice());
     }
 
     private interface DashCentralService {
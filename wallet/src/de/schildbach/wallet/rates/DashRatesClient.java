@@ -6,6 +6,7 @@ import com.squareup.moshi.Moshi;
 
 import java.util.List;
 
+import okhttp3.OkHttpClient;
 import retrofit2.Call;
 import retrofit2.converter.moshi.MoshiConverterFactory;
 import retrofit2.http.GET;
@@ -28,6 +29,15 @@ public class DashRatesClient extends RetrofitClient implements ExchangeRatesClie
 
     private DashRatesClient() {
         super("https://api.get-spark.com/");
+        init();
+    }
+
+    DashRatesClient(String baseUrl, OkHttpClient.Builder clientBuilder) {
+        super(baseUrl, clientBuilder);
+        init();
+    }
+
+    private void init() {
         Moshi moshi = moshiBuilder.add(new ExchangeRateListMoshiAdapter()).build();
         retrofit = retrofitBuilder.addConverterFactory(MoshiConverterFactory.create(moshi)).build();
         dashRatesService = retrofit.create(DashRatesService.class);
@@ -36,7 +46,7 @@ public class DashRatesClient extends RetrofitClient implements ExchangeRatesClie
     @Override
     @Nullable
     public List<ExchangeRate> getRates() throws Exception {
-        List<ExchangeRate> rates = dashRatesService.getRates().execute().body();
+        List<ExchangeRate> rates = CallGroup.execute(dashRatesService.getRates()).body();
         if (rates == null || rates.isEmpty()) {
             throw new IllegalStateException("Failed to fetch prices from DashRates source");
         }
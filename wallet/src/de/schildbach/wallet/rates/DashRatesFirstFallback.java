@@ -4,6 +4,9 @@ import android.support.annotation.Nullable;
 
 import java.math.BigDecimal;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 /**
  * @author Samuel Barbosa
@@ -12,6 +15,7 @@ public class DashRatesFirstFallback implements ExchangeRatesClient {
 
     private static DashRatesFirstFallback instance;
     private static final String VES_CURRENCY_CODE = "VES";
+    private static final long DEADLINE_SECONDS = 20;
 
     public static DashRatesFirstFallback getInstance() {
         if (instance == null) {
@@ -27,13 +31,40 @@ public class DashRatesFirstFallback implements ExchangeRatesClient {
     @Nullable
     @Override
     public List<ExchangeRate> getRates() throws Exception {
-        BitcoinAverageClient btcAvgClient = BitcoinAverageClient.getInstance();
-        CryptoCompareClient cryptoCompareClient = CryptoCompareClient.getInstance();
+        final BitcoinAverageClient btcAvgClient = BitcoinAverageClient.getInstance();
+        final CryptoCompareClient cryptoCompareClient = CryptoCompareClient.getInstance();
 
-        List<ExchangeRate> rates = btcAvgClient.getGlobalIndices().body();
-        Rate dashBtcRate = cryptoCompareClient.getDashCustomAverage().body();
+        List<ExchangeRate> rates;
+        Rate dashBtcRate;
+        BigDecimal dashVesPrice;
+        ConcurrentRequests requests = new ConcurrentRequests(DEADLINE_SECONDS, TimeUnit.SECONDS);
+        try {
+            Future<List<ExchangeRate>> ratesFuture = requests.submit(new Callable<List<ExchangeRate>>() {
+                @Override
+                public List<ExchangeRate> call() throws Exception {
+                    return btcAvgClient.getGlobalIndices().body();
+                }
+            });
+            Future<Rate> dashBtcRateFuture = requests.submit(new Callable<Rate>() {
+                @Override
+                public Rate call() throws Exception {
+                    return cryptoCompareClient.getDashCustomAverage().body();
+                }
+            });
+            Future<BigDecimal> dashVesPriceFuture = requests.submit(new Callable<BigDecimal>() {
+                @Override
+                public BigDecimal call() throws Exception {
+                    DashCasaResponse response = DashCasaClient.getInstance().getRates().body();
+                    return response != null ? response.getDashVesPrice() : null;
+                }
+            });
 
-        BigDecimal dashVesPrice = DashCasaClient.getInstance().getRates().body().getDashVesPrice();
+            rates = requests.get(ratesFuture);
+            dashBtcRate = requests.get(dashBtcRateFuture);
+            dashVesPrice = requests.get(dashVesPriceFuture);
+        } finally {
+            requests.cancelAll();
+        }
 
         if (rates == null || rates.isEmpty() || dashBtcRate == null || dashVesPrice == null) {
             throw new IllegalStateException("Failed to fetch prices from Fallback1");
@@ -6,6 +6,9 @@ import java.math.BigDecimal;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 /**
  * @author Samuel Barbosa
@@ -14,6 +17,7 @@ public class DashRatesSecondFallback implements ExchangeRatesClient {
 
     private static DashRatesSecondFallback instance;
     private static final String VES_CURRENCY_CODE = "VES";
+    private static final long DEADLINE_SECONDS = 20;
     private List<String> excludedRates = Arrays.asList("BTC", "BCH", "XAG", "XAU", "VEF");
 
     public static DashRatesSecondFallback getInstance() {
@@ -30,25 +34,63 @@ public class DashRatesSecondFallback implements ExchangeRatesClient {
     @Nullable
     @Override
     public List<ExchangeRate> getRates() throws Exception {
-        List<BitPayRate> rates = BitPayClient.getInstance().getRates().body().getRates();
-        BigDecimal dashCentralPrice = DashCentralClient.getInstance().getDashBtcPrice().body().getRate();
-        BigDecimal poloniexPrice = PoloniexClient.getInstance().getRates().body().getRate();
-        BigDecimal dashVesPrice = LocalBitcoinsClient.getInstance().getRates().body().getDashVesPrice();
+        List<BitPayRate> rates;
+        BigDecimal dashCentralPrice;
+        BigDecimal poloniexPrice;
+        BigDecimal dashVesPrice;
+        ConcurrentRequests requests = new ConcurrentRequests(DEADLINE_SECONDS, TimeUnit.SECONDS);
+        try {
+            Future<List<BitPayRate>> ratesFuture = requests.submit(new Callable<List<BitPayRate>>() {
+                @Override
+                public List<BitPayRate> call() throws Exception {
+                    return BitPayClient.getInstance().getRates().body().getRates();
+                }
+            });
+            Future<BigDecimal> dashCentralPriceFuture = requests.submit(new Callable<BigDecimal>() {
+                @Override
+                public BigDecimal call() throws Exception {
+                    return DashCentralClient.getInstance().getDashBtcPrice().body().getRate();
+                }
+            });
+            Future<BigDecimal> poloniexPriceFuture = requests.submit(new Callable<BigDecimal>() {
+                @Override
+                public BigDecimal call() throws Exception {
+                    return PoloniexClient.getInstance().getRates().body().getRate();
+                }
+            });
+            Future<BigDecimal> dashVesPriceFuture = requests.submit(new Callable<BigDecimal>() {
+                @Override
+                public BigDecimal call() throws Exception {
+                    return LocalBitcoinsClient.getInstance().getRates().body().getDashVesPrice();
+                }
+            });
+
+            rates = requests.get(ratesFuture);
+            // one of the two DASH/BTC sources is enough
+            dashCentralPrice = requests.getOptional(dashCentralPriceFuture);
+            poloniexPrice = requests.getOptional(poloniexPriceFuture);
+            dashVesPrice = requests.getOptional(dashVesPriceFuture);
+        } finally {
+            requests.cancelAll();
+        }
 
         if (rates == null || rates.isEmpty() || (dashCentralPrice == null && poloniexPrice == null)) {
             throw new IllegalStateException("Failed to fetch prices from Fallback2");
         }
 
         BigDecimal dashBtcRate = null;
-        if (poloniexPrice.compareTo(BigDecimal.ZERO) > 0) {
-            if (dashCentralPrice.compareTo(BigDecimal.ZERO) > 0) {
+        if (poloniexPrice != null && poloniexPrice.compareTo(BigDecimal.ZERO) > 0) {
+            if (dashCentralPrice != null && dashCentralPrice.compareTo(BigDecimal.ZERO) > 0) {
                 dashBtcRate = dashCentralPrice.add(poloniexPrice).divide(BigDecimal.valueOf(2));
             } else {
                 dashBtcRate = poloniexPrice;
             }
-        } else if (dashCentralPrice.compareTo(BigDecimal.ZERO) > 0) {
+        } else if (dashCentralPrice != null && dashCentralPrice.compareTo(BigDecimal.ZERO) > 0) {
             dashBtcRate = dashCentralPrice;
         }
+        if (dashBtcRate == null) {
+            throw new IllegalStateException("Failed to fetch prices from Fallback2");
+        }
 
         List<ExchangeRate> exchangeRates = new ArrayList<>();
         for(BitPayRate rate : rates) {
@@ -4,11 +4,9 @@ import android.support.annotation.Nullable;
 
 import com.squareup.moshi.Moshi;
 
-import org.dash.wallet.common.data.BigDecimalAdapter;
-
-import java.util.ArrayList;
 import java.util.List;
 
+import okhttp3.OkHttpClient;
 import retrofit2.Call;
 import retrofit2.Response;
 import retrofit2.converter.moshi.MoshiConverterFactory;
@@ -16,8 +14,6 @@ import retrofit2.http.GET;
 
 public class DashRetailClient extends RetrofitClient implements ExchangeRatesClient {
 
-    private static final String DASH_CURRENCY_SYMBOL = "DASH";
-
     private static DashRetailClient instance;
 
     public static DashRetailClient getInstance() {
@@ -31,8 +27,16 @@ public class DashRetailClient extends RetrofitClient implements ExchangeRatesCli
 
     private DashRetailClient(String baseUrl) {
         super(baseUrl);
+        init();
+    }
 
-        Moshi moshi = moshiBuilder.add(new BigDecimalAdapter()).build();
+    DashRetailClient(String baseUrl, OkHttpClient.Builder clientBuilder) {
+        super(baseUrl, clientBuilder);
+        init();
+    }
+
+    private void init() {
+        Moshi moshi = moshiBuilder.add(new DashRetailRateAdapter()).build();
         retrofit = retrofitBuilder.addConverterFactory(MoshiConverterFactory.create(moshi)).build();
         service = retrofit.create(DashRetailService.class);
     }
@@ -40,26 +44,19 @@ public class DashRetailClient extends RetrofitClient implements ExchangeRatesCli
     @Nullable
     @Override
     public List<ExchangeRate> getRates() throws Exception {
-        Response<List<DashRetailRate>> response = service.getRates().execute();
-        List<DashRetailRate> rates = response.body();
+        Response<List<ExchangeRate>> response = CallGroup.execute(service.getRates());
+        List<ExchangeRate> rates = response.body();
 
         if (rates == null || rates.isEmpty()) {
             throw new IllegalStateException("Failed to fetch prices from DashRetail");
         }
 
-        List<ExchangeRate> exchangeRates = new ArrayList<>();
-        for (DashRetailRate rate : rates) {
-            if (DASH_CURRENCY_SYMBOL.equals(rate.getBaseCurrency())) {
-                exchangeRates.add(new ExchangeRate(rate.getQuoteCurrency(), rate.getPrice().toPlainString()));
-            }
-        }
-
-        return exchangeRates;
+        return rates;
     }
 
     private interface DashRetailService {
         @GET("rates?source=dashretail")
-        Call<List<DashRetailRate>> getRates();
+        Call<List<ExchangeRate>> getRates();
     }
 
 }
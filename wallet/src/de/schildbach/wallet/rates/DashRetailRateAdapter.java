@@ -0,0 +1,53 @@
+package de.schildbach.wallet.rates;
+
+import com.squareup.moshi.FromJson;
+import com.squareup.moshi.JsonReader;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Streams the DashRetail rate list straight into {@link ExchangeRate}s, keeping only the DASH based pairs.
+ */
+public class DashRetailRateAdapter {
+
+    private static final String DASH_CURRENCY_SYMBOL = "DASH";
+
+    @FromJson
+    List<ExchangeRate> fromJson(JsonReader jsonReader) throws IOException {
+        List<ExchangeRate> rates = new ArrayList<>();
+        jsonReader.beginArray();
+        while (jsonReader.hasNext()) {
+            String baseCurrency = null;
+            String quoteCurrency = null;
+            String price = null;
+            jsonReader.beginObject();
+            while (jsonReader.hasNext()) {
+                switch (jsonReader.nextName()) {
+                    case "baseCurrency":
+                        baseCurrency = jsonReader.nextString();
+                        break;
+                    case "quoteCurrency":
+                        quoteCurrency = jsonReader.nextString();
+                        break;
+                    case "price":
+                        if (jsonReader.peek() == JsonReader.Token.NULL) {
+                            jsonReader.skipValue();
+                        } else {
+                            price = jsonReader.nextString();
+                        }
+                        break;
+                    default:
+                        jsonReader.skipValue();
+                }
+            }
+            jsonReader.endObject();
+            if (DASH_CURRENCY_SYMBOL.equals(baseCurrency) && quoteCurrency != null && price != null) {
+                ExchangeRateListMoshiAdapter.addRate(rates, quoteCurrency, price);
+            }
+        }
+        jsonReader.endArray();
+        return rates;
+    }
+}
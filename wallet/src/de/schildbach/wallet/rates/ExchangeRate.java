@@ -1,6 +1,7 @@
 package de.schildbach.wallet.rates;
 
 import android.arch.persistence.room.Entity;
+import android.arch.persistence.room.Ignore;
 import android.arch.persistence.room.PrimaryKey;
 import android.support.annotation.NonNull;
 
@@ -17,11 +18,23 @@ public class ExchangeRate {
     @PrimaryKey
     @NonNull
     private String currencyCode;
+    /** as received from the provider, for display */
     private String rate;
+    /** the rate in units of 10^-{@link Fiat#SMALLEST_UNIT_EXPONENT}, parsed once when received */
+    private long value;
 
-    public ExchangeRate(@NonNull String currencyCode, String rate) {
+    @Ignore
+    private Fiat fiat;
+
+    public ExchangeRate(@NonNull String currencyCode, String rate, long value) {
         this.currencyCode = currencyCode;
         this.rate = rate;
+        this.value = value;
+    }
+
+    @Ignore
+    public ExchangeRate(@NonNull String currencyCode, String rate) {
+        this(currencyCode, rate, parseValue(rate));
     }
 
     @NonNull
@@ -35,11 +48,74 @@ public class ExchangeRate {
 
     public void setRate(String rate) {
         this.rate = rate;
+        this.value = parseValue(rate);
+        this.fiat = null;
+    }
+
+    public long getValue() {
+        return value;
     }
 
     public Fiat getFiat() {
-        final long val = new BigDecimal(rate).movePointRight(Fiat.SMALLEST_UNIT_EXPONENT).longValue();
-        return Fiat.valueOf(currencyCode, val);
+        if (fiat == null) {
+            fiat = Fiat.valueOf(currencyCode, value);
+        }
+        return fiat;
+    }
+
+    /**
+     * Parses a decimal rate into units of 10^-{@link Fiat#SMALLEST_UNIT_EXPONENT}, dropping further digits like
+     * {@code new BigDecimal(rate).movePointRight(Fiat.SMALLEST_UNIT_EXPONENT).longValue()} does, but without
+     * allocating for the plain decimals that providers send.
+     */
+    static long parseValue(String rate) {
+        int length = rate.length();
+        int i = 0;
+        boolean negative = false;
+        if (length > 0 && (rate.charAt(0) == '-' || rate.charAt(0) == '+')) {
+            negative = rate.charAt(0) == '-';
+            i++;
+        }
+
+        long value = 0;
+        int fractionDigits = -1;
+        boolean hasDigits = false;
+        for (; i < length; i++) {
+            char c = rate.charAt(i);
+            if (c >= '0' && c <= '9') {
+                hasDigits = true;
+                if (fractionDigits >= Fiat.SMALLEST_UNIT_EXPONENT) {
+                    continue;
+                }
+                if (value > (Long.MAX_VALUE - 9) / 10) {
+                    return parseValueSlowly(rate);
+                }
+                value = value * 10 + (c - '0');
+                if (fractionDigits >= 0) {
+                    fractionDigits++;
+                }
+            } else if (c == '.' && fractionDigits < 0) {
+                fractionDigits = 0;
+            } else {
+                // exponent or something we don't understand
+                return parseValueSlowly(rate);
+            }
+        }
+        if (!hasDigits) {
+            return parseValueSlowly(rate);
+        }
+
+        for (int f = Math.max(fractionDigits, 0); f < Fiat.SMALLEST_UNIT_EXPONENT; f++) {
+            if (value > Long.MAX_VALUE / 10) {
+                return parseValueSlowly(rate);
+            }
+            value *= 10;
+        }
+        return negative ? -value : value;
+    }
+
+    private static long parseValueSlowly(String rate) {
+        return new BigDecimal(rate).movePointRight(Fiat.SMALLEST_UNIT_EXPONENT).longValue();
     }
 
     @Override
@@ -0,0 +1,62 @@
+package de.schildbach.wallet.rates;
+
+import android.support.annotation.Nullable;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import de.schildbach.wallet.AppDatabase;
+
+/**
+ * Keeps a time bucketed history of all rates we fetched, so that transactions can be valued at the rate of their
+ * time without asking the network.
+ *
+ * Samples are recorded hourly. Samples older than {@link #HOURLY_RETENTION_MS} are downsampled to one a day, and
+ * anything older than {@link #RETENTION_MS} is dropped.
+ */
+public class ExchangeRateHistory {
+
+    private static final Logger log = LoggerFactory.getLogger(ExchangeRateHistory.class);
+
+    static final long BUCKET_MS = TimeUnit.HOURS.toMillis(1);
+    static final long DOWNSAMPLED_BUCKET_MS = TimeUnit.DAYS.toMillis(1);
+    static final long HOURLY_RETENTION_MS = TimeUnit.DAYS.toMillis(30);
+    static final long RETENTION_MS = TimeUnit.DAYS.toMillis(3 * 365);
+    /** a sample further away than this from the time asked for isn't representative */
+    private static final long MAX_SAMPLE_AGE_MS = 2 * DOWNSAMPLED_BUCKET_MS;
+    private static final long MAINTENANCE_INTERVAL_MS = TimeUnit.DAYS.toMillis(1);
+
+    private final ExchangeRateHistoryDao dao;
+    private long lastMaintenance;
+
+    public ExchangeRateHistory(AppDatabase appDatabase) {
+        this.dao = appDatabase.exchangeRateHistoryDao();
+    }
+
+    /** Records the rates as the sample for the current bucket, unless it already has one. Call off the main thread. */
+    public void record(List<ExchangeRate> rates, long now) {
+        long bucket = now - now % BUCKET_MS;
+        List<ExchangeRateHistoryEntry> entries = new ArrayList<>(rates.size());
+        for (ExchangeRate rate : rates) {
+            entries.add(new ExchangeRateHistoryEntry(rate.getCurrencyCode(), bucket, rate.getValue()));
+        }
+        dao.insertAll(entries);
+
+        if (now - lastMaintenance > MAINTENANCE_INTERVAL_MS) {
+            lastMaintenance = now;
+            int deleted = dao.deleteOlderThan(now - RETENTION_MS);
+            int downsampled = dao.downsample(now - HOURLY_RETENTION_MS, DOWNSAMPLED_BUCKET_MS);
+            log.info("exchange rate history maintenance: {} expired, {} downsampled", deleted, downsampled);
+        }
+    }
+
+    /** The rate of the given currency at the given time, or null if we have no sample close enough. */
+    @Nullable
+    public ExchangeRateHistoryEntry getRateAt(String currencyCode, long time) {
+        return dao.getRateAt(currencyCode, time, time - MAX_SAMPLE_AGE_MS);
+    }
+}
@@ -0,0 +1,32 @@
+package de.schildbach.wallet.rates;
+
+import android.arch.persistence.room.Dao;
+import android.arch.persistence.room.Insert;
+import android.arch.persistence.room.OnConflictStrategy;
+import android.arch.persistence.room.Query;
+
+import java.util.List;
+
+@Dao
+public interface ExchangeRateHistoryDao {
+
+    /** Append only, the first sample of a bucket wins. */
+    @Insert(onConflict = OnConflictStrategy.IGNORE)
+    void insertAll(List<ExchangeRateHistoryEntry> entries);
+
+    /** The latest sample taken at or before the given time, but not before notBefore. */
+    @Query("SELECT * FROM exchange_rate_history WHERE currencyCode = :currencyCode"
+            + " AND timestamp <= :time AND timestamp >= :notBefore ORDER BY timestamp DESC LIMIT 1")
+    ExchangeRateHistoryEntry getRateAt(String currencyCode, long time, long notBefore);
+
+    /** Keeps only the first sample of each period for samples older than the given time. */
+    @Query("DELETE FROM exchange_rate_history WHERE timestamp < :before AND timestamp NOT IN"
+            + " (SELECT MIN(timestamp) FROM exchange_rate_history AS period"
+            + " WHERE period.currencyCode = exchange_rate_history.currencyCode"
+            + " AND period.timestamp / :periodMs = exchange_rate_history.timestamp / :periodMs)")
+    int downsample(long before, long periodMs);
+
+    @Query("DELETE FROM exchange_rate_history WHERE timestamp < :before")
+    int deleteOlderThan(long before);
+
+}
@@ -0,0 +1,49 @@
+package de.schildbach.wallet.rates;
+
+import android.arch.persistence.room.Entity;
+import android.support.annotation.NonNull;
+
+import org.bitcoinj.utils.Fiat;
+
+/**
+ * One sample of a rate, taken at the start of a time bucket. The primary key doubles as the
+ * (currencyCode, timestamp) index that historical lookups go through.
+ */
+@Entity(tableName = "exchange_rate_history", primaryKeys = { "currencyCode", "timestamp" })
+public class ExchangeRateHistoryEntry {
+
+    @NonNull
+    private String currencyCode;
+    /** start of the bucket this sample falls in */
+    private long timestamp;
+    /** the rate in units of 10^-{@link Fiat#SMALLEST_UNIT_EXPONENT} */
+    private long value;
+
+    public ExchangeRateHistoryEntry(@NonNull String currencyCode, long timestamp, long value) {
+        this.currencyCode = currencyCode;
+        this.timestamp = timestamp;
+        this.value = value;
+    }
+
+    @NonNull
+    public String getCurrencyCode() {
+        return currencyCode;
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public long getValue() {
+        return value;
+    }
+
+    public Fiat getFiat() {
+        return Fiat.valueOf(currencyCode, value);
+    }
+
+    @Override
+    public String toString() {
+        return "{" + currencyCode + "@" + timestamp + ":" + value + "}";
+    }
+}
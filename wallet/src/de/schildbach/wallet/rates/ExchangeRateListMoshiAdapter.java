@@ -36,10 +36,22 @@ public class ExchangeRateListMoshiAdapter {
         jsonReader.beginObject();
         while (jsonReader.hasNext()) {
             String currency = jsonReader.nextName();
-            list.add(new ExchangeRate(currency, jsonReader.nextString()));
+            addRate(list, currency, jsonReader.nextString());
         }
 
         return list;
     }
 
+    /**
+     * Adds the rate, parsed into its fixed point value right away. Entries that aren't a number are left out rather
+     * than failing the whole list.
+     */
+    static void addRate(List<ExchangeRate> rates, String currencyCode, String rate) {
+        try {
+            rates.add(new ExchangeRate(currencyCode, rate));
+        } catch (NumberFormatException e) {
+            // skip
+        }
+    }
+
 }
@@ -23,8 +23,8 @@ public interface ExchangeRatesDao {
     @Query("SELECT * FROM exchange_rates WHERE currencyCode = :currencyCode LIMIT 1")
     LiveData<ExchangeRate> getRate(String currencyCode);
 
-    @Query("SELECT * FROM exchange_rates WHERE currencyCode = :currencyCode LIMIT 1")
-    ExchangeRate getRateSync(String currencyCode);
+    @Query("SELECT * FROM exchange_rates")
+    List<ExchangeRate> getAllSync();
 
     @Query("SELECT * FROM exchange_rates WHERE currencyCode LIKE :currencyCode || '%' ORDER BY currencyCode")
     LiveData<List<ExchangeRate>> searchRates(String currencyCode);
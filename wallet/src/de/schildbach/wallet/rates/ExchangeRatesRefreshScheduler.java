@@ -0,0 +1,130 @@
+package de.schildbach.wallet.rates;
+
+import android.content.Context;
+import android.net.ConnectivityManager;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs the rate refresh on its own thread at a cadence that depends on whether rates are on screen and whether the
+ * active network is metered. At most one refresh is in flight; requests that arrive meanwhile are coalesced into it.
+ */
+class ExchangeRatesRefreshScheduler {
+
+    private static final Logger log = LoggerFactory.getLogger(ExchangeRatesRefreshScheduler.class);
+
+    static final long VISIBLE_INTERVAL_MS = TimeUnit.SECONDS.toMillis(30);
+    static final long VISIBLE_METERED_INTERVAL_MS = TimeUnit.MINUTES.toMillis(2);
+    static final long BACKGROUND_INTERVAL_MS = TimeUnit.MINUTES.toMillis(30);
+    static final long BACKGROUND_METERED_INTERVAL_MS = TimeUnit.HOURS.toMillis(2);
+    /** after a failure, retry this soon at the latest */
+    static final long RETRY_INTERVAL_MS = TimeUnit.MINUTES.toMillis(1);
+
+    interface RefreshTask {
+        /** @return whether the rates are now current */
+        boolean refresh();
+    }
+
+    private final RefreshTask task;
+    private final ConnectivityManager connectivityManager;
+    private final ScheduledExecutorService executor;
+    private final AtomicBoolean inFlight = new AtomicBoolean();
+    private final AtomicInteger visibleObservers = new AtomicInteger();
+    private volatile long lastSuccess;
+    private ScheduledFuture<?> next;
+
+    ExchangeRatesRefreshScheduler(Context context, RefreshTask task) {
+        this.task = task;
+        this.connectivityManager = (ConnectivityManager) context.getSystemService(Context.CONNECTIVITY_SERVICE);
+        this.executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "exchange rates");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    /** Refreshes now, unless a refresh is already running, in which case its result will do. */
+    void requestRefresh() {
+        schedule(0);
+    }
+
+    /** Something that shows rates became visible. */
+    void onVisible() {
+        if (visibleObservers.getAndIncrement() == 0) {
+            scheduleByAge();
+        }
+    }
+
+    void onHidden() {
+        if (visibleObservers.decrementAndGet() == 0) {
+            scheduleByAge();
+        }
+    }
+
+    long getInterval() {
+        boolean metered = connectivityManager != null && connectivityManager.isActiveNetworkMetered();
+        if (visibleObservers.get() > 0) {
+            return metered ? VISIBLE_METERED_INTERVAL_MS : VISIBLE_INTERVAL_MS;
+        } else {
+            return metered ? BACKGROUND_METERED_INTERVAL_MS : BACKGROUND_INTERVAL_MS;
+        }
+    }
+
+    private void scheduleByAge() {
+        long age = System.currentTimeMillis() - lastSuccess;
+        schedule(Math.max(getInterval() - age, 0));
+    }
+
+    private synchronized void schedule(long delayMs) {
+        if (inFlight.get()) {
+            return; // reschedules itself when done
+        }
+        if (next != null) {
+            if (next.getDelay(TimeUnit.MILLISECONDS) <= delayMs) {
+                return; // sooner already
+            }
+            next.cancel(false);
+        }
+        next = executor.schedule(new Runnable() {
+            @Override
+            public void run() {
+                runRefresh();
+            }
+        }, delayMs, TimeUnit.MILLISECONDS);
+    }
+
+    private void runRefresh() {
+        synchronized (this) {
+            next = null;
+        }
+        if (!inFlight.compareAndSet(false, true)) {
+            return;
+        }
+        boolean success = false;
+        try {
+            success = task.refresh();
+        } catch (RuntimeException x) {
+            log.error("exchange rate refresh failed", x);
+        } finally {
+            inFlight.set(false);
+        }
+        if (success) {
+            lastSuccess = System.currentTimeMillis();
+            schedule(getInterval());
+        } else {
+            schedule(Math.min(getInterval(), RETRY_INTERVAL_MS));
+        }
+    }
+}
@@ -1,19 +1,18 @@
 package de.schildbach.wallet.rates;
 
 import android.arch.lifecycle.LiveData;
+import android.arch.lifecycle.MediatorLiveData;
 import android.arch.lifecycle.MutableLiveData;
+import android.arch.lifecycle.Observer;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.ArrayDeque;
-import java.util.Deque;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.concurrent.Executor;
-import java.util.concurrent.Executors;
-import java.util.concurrent.TimeUnit;
 
 import de.schildbach.wallet.AppDatabase;
+import de.schildbach.wallet.WalletApplication;
 
 /**
  * @author Samuel Barbosa
@@ -24,120 +23,133 @@ public class ExchangeRatesRepository {
     private static ExchangeRatesRepository instance;
 
     private AppDatabase appDatabase;
-    private Executor executor;
-    private Deque<ExchangeRatesClient> exchangeRatesClients = new ArrayDeque<>();
-
-    private static final long UPDATE_FREQ_MS = TimeUnit.SECONDS.toMillis(30);
-    private long lastUpdated;
+    private HedgedRatesFetcher ratesFetcher;
+    private ExchangeRateHistory history;
+    private ExchangeRatesRefreshScheduler refreshScheduler;
 
     public MutableLiveData<Boolean> isLoading = new MutableLiveData<>();
     public MutableLiveData<Boolean> hasError = new MutableLiveData<>();
 
-    private boolean isRefreshing = false;
-
     private ExchangeRatesRepository() {
         appDatabase = AppDatabase.getAppDatabase();
-        executor = Executors.newSingleThreadExecutor();
-
-        populateExchangeRatesStack();
+        history = new ExchangeRateHistory(appDatabase);
+
+        // in order of preference
+        List<ExchangeRatesClient> exchangeRatesClients = new ArrayList<>();
+        exchangeRatesClients.add(DashRetailClient.getInstance());
+        exchangeRatesClients.add(DashRatesClient.getInstance());
+        exchangeRatesClients.add(DashRatesFirstFallback.getInstance());
+        exchangeRatesClients.add(DashRatesSecondFallback.getInstance());
+        ratesFetcher = new HedgedRatesFetcher(exchangeRatesClients);
+
+        refreshScheduler = new ExchangeRatesRefreshScheduler(WalletApplication.getInstance(),
+                new ExchangeRatesRefreshScheduler.RefreshTask() {
+                    @Override
+                    public boolean refresh() {
+                        return refreshRates();
+                    }
+                });
+        refreshScheduler.requestRefresh();
     }
 
-    public static ExchangeRatesRepository getInstance() {
+    public static synchronized ExchangeRatesRepository getInstance() {
         if (instance == null) {
             instance = new ExchangeRatesRepository();
         }
         return instance;
     }
 
-    private void populateExchangeRatesStack() {
-        if (!exchangeRatesClients.isEmpty()) {
-            exchangeRatesClients.clear();
-        }
-
-        exchangeRatesClients.push(DashRatesSecondFallback.getInstance());
-        exchangeRatesClients.push(DashRatesFirstFallback.getInstance());
-        exchangeRatesClients.push(DashRatesClient.getInstance());
-        exchangeRatesClients.push(DashRetailClient.getInstance());
-    }
-
-    private void refreshRates() {
-        this.refreshRates(false);
-    }
-
-    private void refreshRates(boolean forceRefresh) {
-        if (!shouldRefresh()) {
-            return;
-        }
-        if (exchangeRatesClients.isEmpty()) {
-            populateExchangeRatesStack();
-        }
-        if (!forceRefresh && isRefreshing) {
-            return;
-        }
-        isRefreshing = true;
-        final ExchangeRatesClient exchangeRatesClient = exchangeRatesClients.pop();
+    private boolean refreshRates() {
         isLoading.postValue(true);
-        executor.execute(new Runnable() {
-            @Override
-            public void run() {
-                List<ExchangeRate> rates;
-                try {
-                    rates = exchangeRatesClient.getRates();
-                    if (rates != null && !rates.isEmpty()) {
-                        appDatabase.exchangeRatesDao().insertAll(rates);
-                        lastUpdated = System.currentTimeMillis();
-                        populateExchangeRatesStack();
-                        hasError.postValue(false);
-                        isRefreshing = false;
-                        log.info("exchange rates updated successfully with {}", exchangeRatesClient);
-                    } else if (!exchangeRatesClients.isEmpty()) {
-                        refreshRates(true);
-                    } else {
-                        handleRefreshError();
-                    }
-                } catch (Exception e) {
-                    log.error("failed to fetch exchange rates with {}", exchangeRatesClient, e);
-                    if (!exchangeRatesClients.isEmpty()) {
-                        refreshRates(true);
-                    } else {
-                        handleRefreshError();
-                    }
-                } finally {
-                    isLoading.postValue(false);
+        try {
+            HedgedRatesFetcher.Fetched fetched = ratesFetcher.fetch();
+            if (fetched != null) {
+                List<ExchangeRate> rates = fetched.rates;
+                // writing only what changed keeps Room from invalidating observers for nothing
+                ExchangeRatesSnapshot snapshot = ExchangeRatesSnapshot.getInstance();
+                List<ExchangeRate> changed = snapshot.getChanged(rates);
+                if (!changed.isEmpty()) {
+                    appDatabase.exchangeRatesDao().insertAll(changed);
+                    snapshot.update(changed);
                 }
+                fetched.markStored();
+                history.record(rates, System.currentTimeMillis());
+                hasError.postValue(false);
+                log.info("exchange rates updated successfully, {} of {} changed, latencies: {}", changed.size(),
+                        rates.size(), ratesFetcher);
+                return true;
+            } else {
+                handleRefreshError();
             }
-        });
+        } catch (RatesNotModifiedException e) {
+            hasError.postValue(false);
+            return true;
+        } catch (Exception e) {
+            log.error("failed to fetch exchange rates", e);
+            handleRefreshError();
+        } finally {
+            isLoading.postValue(false);
+        }
+        return false;
     }
 
     private void handleRefreshError() {
-        isRefreshing = false;
         if (appDatabase.exchangeRatesDao().count() == 0) {
             hasError.postValue(true);
         }
     }
 
-    private boolean shouldRefresh() {
-        long now = System.currentTimeMillis();
-        return lastUpdated == 0 || now - lastUpdated > UPDATE_FREQ_MS;
-    }
-
     public LiveData<List<ExchangeRate>> getRates() {
-        if (shouldRefresh()) {
-            refreshRates();
-        }
-        return appDatabase.exchangeRatesDao().getAll();
+        return new VisibilityTrackingLiveData<>(appDatabase.exchangeRatesDao().getAll());
     }
 
     public LiveData<ExchangeRate> getRate(String currencyCode) {
-        if (shouldRefresh()) {
-            refreshRates();
-        }
-        return appDatabase.exchangeRatesDao().getRate(currencyCode);
+        return new VisibilityTrackingLiveData<ExchangeRate>(appDatabase.exchangeRatesDao().getRate(currencyCode)) {
+            @Override
+            protected void onSourceChanged(ExchangeRate rate) {
+                // Room re-runs the query whenever any rate was written, only pass on changes to this one
+                ExchangeRate current = getValue();
+                if (rate == null || current == null || rate.getValue() != current.getValue()) {
+                    setValue(rate);
+                }
+            }
+        };
     }
 
     public LiveData<List<ExchangeRate>> searchRates(String query) {
-        return appDatabase.exchangeRatesDao().searchRates(query);
+        return new VisibilityTrackingLiveData<>(appDatabase.exchangeRatesDao().searchRates(query));
     }
 
+    /**
+     * Passes the source through and tells the scheduler while it is observed by something on screen, so that
+     * reading rates never triggers network work by itself.
+     */
+    private class VisibilityTrackingLiveData<T> extends MediatorLiveData<T> {
+
+        VisibilityTrackingLiveData(LiveData<T> source) {
+            addSource(source, new Observer<T>() {
+                @Override
+                public void onChanged(T value) {
+                    onSourceChanged(value);
+                }
+            });
+        }
+
+        protected void onSourceChanged(T value) {
+            setValue(value);
+        }
+
+        @Override
+        protected void onActive() {
+            super.onActive();
+            refreshScheduler.onVisible();
+        }
+
+        @Override
+        protected void onInactive() {
+            super.onInactive();
+            refreshScheduler.onHidden();
+        }
+    }
 
 }
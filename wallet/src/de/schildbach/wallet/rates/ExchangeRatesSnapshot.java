@@ -0,0 +1,94 @@
+package de.schildbach.wallet.rates;
+
+import android.support.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+import de.schildbach.wallet.AppDatabase;
+
+/**
+ * Immutable in-memory copy of all stored rates, swapped atomically whenever {@link ExchangeRatesRepository} writes
+ * new rates, so that hot paths can look up a rate without querying the database.
+ *
+ * The copy is loaded from the database on first use. Rates must not be modified once they're in here.
+ */
+public class ExchangeRatesSnapshot {
+
+    private static ExchangeRatesSnapshot instance;
+
+    private final AtomicReference<Map<String, ExchangeRate>> rates = new AtomicReference<>();
+
+    private ExchangeRatesSnapshot() {
+    }
+
+    public static synchronized ExchangeRatesSnapshot getInstance() {
+        if (instance == null) {
+            instance = new ExchangeRatesSnapshot();
+        }
+        return instance;
+    }
+
+    /** Whether {@link #getRate(String)} will answer without touching the database. */
+    public boolean isLoaded() {
+        return rates.get() != null;
+    }
+
+    /** Loads the snapshot on first use, so call off the main thread unless {@link #isLoaded()}. */
+    @Nullable
+    public ExchangeRate getRate(String currencyCode) {
+        Map<String, ExchangeRate> rates = this.rates.get();
+        if (rates == null) {
+            rates = load();
+        }
+        return rates.get(currencyCode);
+    }
+
+    /** The rates that are new or whose value differs from the snapshot. */
+    List<ExchangeRate> getChanged(List<ExchangeRate> fresh) {
+        Map<String, ExchangeRate> current = rates.get();
+        if (current == null) {
+            current = load();
+        }
+        List<ExchangeRate> changed = new ArrayList<>();
+        for (ExchangeRate rate : fresh) {
+            ExchangeRate old = current.get(rate.getCurrencyCode());
+            if (old == null || old.getValue() != rate.getValue()) {
+                changed.add(rate);
+            }
+        }
+        return changed;
+    }
+
+    /** Merges freshly written rates in, like the REPLACE insert does in the database. */
+    synchronized void update(List<ExchangeRate> fresh) {
+        Map<String, ExchangeRate> current = rates.get();
+        if (current == null) {
+            current = load();
+        }
+        Map<String, ExchangeRate> updated = new HashMap<>(current);
+        for (ExchangeRate rate : fresh) {
+            updated.put(rate.getCurrencyCode(), rate);
+        }
+        rates.set(Collections.unmodifiableMap(updated));
+    }
+
+    private synchronized Map<String, ExchangeRate> load() {
+        Map<String, ExchangeRate> current = rates.get();
+        if (current != null) {
+            return current;
+        }
+        List<ExchangeRate> stored = AppDatabase.getAppDatabase().exchangeRatesDao().getAllSync();
+        Map<String, ExchangeRate> loaded = new HashMap<>(stored.size());
+        for (ExchangeRate rate : stored) {
+            loaded.put(rate.getCurrencyCode(), rate);
+        }
+        current = Collections.unmodifiableMap(loaded);
+        rates.set(current);
+        return current;
+    }
+}
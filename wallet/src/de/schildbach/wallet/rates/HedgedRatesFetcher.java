@@ -0,0 +1,201 @@
+package de.schildbach.wallet.rates;
+
+import android.support.annotation.Nullable;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Fetches rates from a list of providers in order of preference, hedging against slow ones.
+ *
+ * The first provider starts right away. Whenever the most recently started provider fails, or hasn't answered within
+ * its hedge delay, the next one is started as well. The first non-empty result wins and the HTTP calls of all other
+ * requests are cancelled, see {@link CallGroup}. The hedge delay of a provider is a high percentile of its past latencies.
+ */
+class HedgedRatesFetcher {
+
+    private static final Logger log = LoggerFactory.getLogger(HedgedRatesFetcher.class);
+
+    private static final long DEFAULT_HEDGE_DELAY_MS = 1500;
+    private static final long MIN_HEDGE_DELAY_MS = 300;
+    private static final long MAX_HEDGE_DELAY_MS = 5000;
+    private static final int MIN_SAMPLES = 5;
+    private static final double HEDGE_PERCENTILE = 90;
+
+    private final List<ExchangeRatesClient> clients;
+    private final Map<ExchangeRatesClient, LatencyHistogram> latencies = new HashMap<>();
+    private final ExecutorService executor;
+
+    HedgedRatesFetcher(List<ExchangeRatesClient> clients) {
+        this.clients = clients;
+        for (ExchangeRatesClient client : clients) {
+            latencies.put(client, new LatencyHistogram());
+        }
+        this.executor = Executors.newFixedThreadPool(clients.size());
+    }
+
+    /** Rates fetched from the winning provider. */
+    class Fetched {
+
+        final List<ExchangeRate> rates;
+        private final ExchangeRatesClient client;
+
+        private Fetched(List<ExchangeRate> rates, ExchangeRatesClient client) {
+            this.rates = rates;
+            this.client = client;
+        }
+
+        /**
+         * To be called once the rates are stored. Only from then on may the provider answer a revalidation with a
+         * {@link RatesNotModifiedException}.
+         */
+        void markStored() {
+            markLastDelivered(client);
+        }
+    }
+
+    /**
+     * @return the winning rates, or null if every provider failed
+     * @throws RatesNotModifiedException if the provider the stored rates came from confirmed they are still current
+     */
+    @Nullable
+    Fetched fetch() throws InterruptedException, RatesNotModifiedException {
+        CompletionService<List<ExchangeRate>> completionService = new ExecutorCompletionService<>(executor);
+        Map<Future<List<ExchangeRate>>, ExchangeRatesClient> running = new HashMap<>();
+        List<Future<List<ExchangeRate>>> futures = new ArrayList<>(clients.size());
+        List<CallGroup> callGroups = new ArrayList<>(clients.size());
+        int next = 0;
+        long hedgeAt = 0;
+        try {
+            futures.add(start(completionService, clients.get(next), running, callGroups));
+            hedgeAt = System.currentTimeMillis() + hedgeDelayMs(clients.get(next));
+            next++;
+            while (!running.isEmpty()) {
+                Future<List<ExchangeRate>> done = next < clients.size()
+                        ? completionService.poll(hedgeAt - System.currentTimeMillis(), TimeUnit.MILLISECONDS)
+                        : completionService.take();
+                if (done == null) {
+                    log.info("{} is slow, hedging with {}", clients.get(next - 1), clients.get(next));
+                    futures.add(start(completionService, clients.get(next), running, callGroups));
+                    hedgeAt = System.currentTimeMillis() + hedgeDelayMs(clients.get(next));
+                    next++;
+                    continue;
+                }
+
+                ExchangeRatesClient client = running.remove(done);
+                List<ExchangeRate> rates = null;
+                try {
+                    rates = done.get();
+                } catch (ExecutionException x) {
+                    if (x.getCause() instanceof RatesNotModifiedException) {
+                        log.info("exchange rates not modified at {}", client);
+                        throw (RatesNotModifiedException) x.getCause();
+                    }
+                    log.info("failed to fetch exchange rates with {}: {}", client, x.getCause().toString());
+                }
+                if (rates != null && !rates.isEmpty()) {
+                    log.info("exchange rates fetched with {}", client);
+                    // the stored rates are about to be replaced, until then no provider vouches for them
+                    markLastDelivered(null);
+                    return new Fetched(rates, client);
+                }
+                // a failure of the newest provider doesn't need to wait for the hedge delay
+                if (client == clients.get(next - 1) && next < clients.size()) {
+                    futures.add(start(completionService, clients.get(next), running, callGroups));
+                    hedgeAt = System.currentTimeMillis() + hedgeDelayMs(clients.get(next));
+                    next++;
+                }
+            }
+            return null;
+        } finally {
+            for (Future<List<ExchangeRate>> future : futures) {
+                future.cancel(true);
+            }
+            for (CallGroup callGroup : callGroups) {
+                callGroup.cancel();
+            }
+        }
+    }
+
+    private void markLastDelivered(ExchangeRatesClient winner) {
+        for (ExchangeRatesClient client : clients) {
+            if (client instanceof RetrofitClient) {
+                ((RetrofitClient) client).setLastDelivered(client == winner);
+            }
+        }
+    }
+
+    private Future<List<ExchangeRate>> start(CompletionService<List<ExchangeRate>> completionService,
+                                             final ExchangeRatesClient client,
+                                             Map<Future<List<ExchangeRate>>, ExchangeRatesClient> running,
+                                             List<CallGroup> callGroups) {
+        final CallGroup callGroup = new CallGroup();
+        callGroups.add(callGroup);
+        Future<List<ExchangeRate>> future = completionService.submit(new Callable<List<ExchangeRate>>() {
+            @Override
+            public List<ExchangeRate> call() throws Exception {
+                LatencyHistogram histogram = latencies.get(client);
+                long start = System.currentTimeMillis();
+                try {
+                    List<ExchangeRate> rates = callGroup.run(new Callable<List<ExchangeRate>>() {
+                        @Override
+                        public List<ExchangeRate> call() throws Exception {
+                            return client.getRates();
+                        }
+                    });
+                    if (rates != null && !rates.isEmpty()) {
+                        histogram.record(System.currentTimeMillis() - start);
+                    } else {
+                        histogram.recordFailure();
+                    }
+                    return rates;
+                } catch (RatesNotModifiedException x) {
+                    histogram.record(System.currentTimeMillis() - start);
+                    throw x;
+                } catch (Exception x) {
+                    // losing requests don't count as failures
+                    if (!callGroup.isCancelled()) {
+                        histogram.recordFailure();
+                    }
+                    throw x;
+                }
+            }
+        });
+        running.put(future, client);
+        return future;
+    }
+
+    long hedgeDelayMs(ExchangeRatesClient client) {
+        LatencyHistogram histogram = latencies.get(client);
+        if (histogram.count() < MIN_SAMPLES) {
+            return DEFAULT_HEDGE_DELAY_MS;
+        }
+        long delay = histogram.percentile(HEDGE_PERCENTILE);
+        return Math.max(MIN_HEDGE_DELAY_MS, Math.min(MAX_HEDGE_DELAY_MS, delay));
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        for (ExchangeRatesClient client : clients) {
+            if (builder.length() > 0) {
+                builder.append(", ");
+            }
+            builder.append(client).append(": ").append(latencies.get(client));
+        }
+        return builder.toString();
+    }
+}
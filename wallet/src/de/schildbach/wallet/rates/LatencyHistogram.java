@@ -0,0 +1,57 @@
+package de.schildbach.wallet.rates;
+
+import java.util.Arrays;
+
+/**
+ * Coarse histogram of request latencies, good enough to pick percentiles for hedging decisions.
+ */
+class LatencyHistogram {
+
+    private static final long[] BUCKET_UPPER_BOUNDS_MS = {
+            100, 200, 300, 500, 750, 1000, 1500, 2000, 3000, 5000, 7500, 10000, Long.MAX_VALUE
+    };
+
+    private final long[] counts = new long[BUCKET_UPPER_BOUNDS_MS.length];
+    private long total = 0;
+    private int failures = 0;
+
+    synchronized void record(long latencyMs) {
+        int bucket = 0;
+        while (latencyMs > BUCKET_UPPER_BOUNDS_MS[bucket]) {
+            bucket++;
+        }
+        counts[bucket]++;
+        total++;
+    }
+
+    synchronized void recordFailure() {
+        failures++;
+    }
+
+    synchronized long count() {
+        return total;
+    }
+
+    /**
+     * @return upper bound of the bucket that contains the given percentile, or -1 if nothing was recorded yet
+     */
+    synchronized long percentile(double percentile) {
+        if (total == 0) {
+            return -1;
+        }
+        long threshold = (long) Math.ceil(total * percentile / 100);
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= threshold) {
+                return BUCKET_UPPER_BOUNDS_MS[i];
+            }
+        }
+        return BUCKET_UPPER_BOUNDS_MS[BUCKET_UPPER_BOUNDS_MS.length - 1];
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "n=" + total + " failures=" + failures + " buckets=" + Arrays.toString(counts);
+    }
+}
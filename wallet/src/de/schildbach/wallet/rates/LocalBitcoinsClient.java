@@ -6,6 +6,7 @@ import org.dash.wallet.common.data.BigDecimalAdapter;
 
 import java.io.IOException;
 
+import okhttp3.OkHttpClient;
 import retrofit2.Call;
 import retrofit2.Response;
 import retrofit2.converter.moshi.MoshiConverterFactory;
@@ -25,14 +26,22 @@ public class LocalBitcoinsClient extends RetrofitClient {
 
     private LocalBitcoinsClient(String baseUrl) {
         super(baseUrl);
+        init();
+    }
+
+    LocalBitcoinsClient(String baseUrl, OkHttpClient.Builder clientBuilder) {
+        super(baseUrl, clientBuilder);
+        init();
+    }
 
+    private void init() {
         Moshi moshi = moshiBuilder.add(new BigDecimalAdapter()).build();
         retrofit = retrofitBuilder.addConverterFactory(MoshiConverterFactory.create(moshi)).build();
         service = retrofit.create(LocalBitcoinsService.class);
     }
 
     public Response<LocalBitcoinsResponse> getRates() throws IOException {
-        return service.getRates().execute();
+        return CallGroup.execute(service.getRates());
     }
 
     private interface LocalBitcoinsService {
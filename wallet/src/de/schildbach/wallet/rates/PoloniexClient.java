@@ -6,6 +6,7 @@ import org.dash.wallet.common.data.BigDecimalAdapter;
 
 import java.io.IOException;
 
+import okhttp3.OkHttpClient;
 import retrofit2.Call;
 import retrofit2.Response;
 import retrofit2.converter.moshi.MoshiConverterFactory;
@@ -29,14 +30,22 @@ public class PoloniexClient extends RetrofitClient {
 
     private PoloniexClient(String baseUrl) {
         super(baseUrl);
+        init();
+    }
+
+    PoloniexClient(String baseUrl, OkHttpClient.Builder clientBuilder) {
+        super(baseUrl, clientBuilder);
+        init();
+    }
 
+    private void init() {
         Moshi moshi = moshiBuilder.add(new BigDecimalAdapter()).build();
         retrofit = retrofitBuilder.addConverterFactory(MoshiConverterFactory.create(moshi)).build();
         service = retrofit.create(PoloniexService.class);
     }
 
     public Response<PoloniexResponse> getRates() throws IOException {
-        return service.getRate().execute();
+        return CallGroup.execute(service.getRate());
     }
 
     private interface PoloniexService {
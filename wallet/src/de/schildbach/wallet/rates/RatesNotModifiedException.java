@@ -0,0 +1,14 @@
+package de.schildbach.wallet.rates;
+
+import java.io.IOException;
+
+/**
+ * Thrown instead of delivering rates when the provider confirmed with a 304 that the rates we last stored from it are
+ * still current, so there is nothing to parse or write.
+ */
+public class RatesNotModifiedException extends IOException {
+
+    public RatesNotModifiedException(String message) {
+        super(message);
+    }
+}
@@ -18,16 +18,21 @@
 package de.schildbach.wallet.rates;
 
 import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
 
+import com.google.common.util.concurrent.MoreExecutors;
 import com.squareup.moshi.Moshi;
 
+import java.io.File;
 import java.io.IOException;
+import java.net.HttpURLConnection;
 import java.util.Date;
 import java.util.concurrent.Executor;
-import java.util.concurrent.Executors;
 
 import de.schildbach.wallet.WalletApplication;
 import de.schildbach.wallet.ui.preference.PinRetryController;
+import org.dash.wallet.common.HttpRuntime;
+import okhttp3.Cache;
 import okhttp3.Interceptor;
 import okhttp3.OkHttpClient;
 import okhttp3.Request;
@@ -39,19 +44,65 @@ public abstract class RetrofitClient {
     protected Retrofit.Builder retrofitBuilder;
     protected Moshi.Builder moshiBuilder;
     protected Retrofit retrofit;
-    protected Executor executor;
+
+    private static final String HTTP_CACHE_DIRECTORY = "http-rates";
+    private static final long HTTP_CACHE_SIZE = 2 * 1024 * 1024;
+    private static Cache cache;
+
+    private volatile boolean lastDelivered = false;
 
     protected RetrofitClient(String baseUrl) {
-        OkHttpClient.Builder clientBuilder = new OkHttpClient.Builder();
+        this(baseUrl, appClientBuilder(), null);
+    }
 
-        PinRetryController pinRetryController = new PinRetryController(WalletApplication.getInstance());
-        clientBuilder.addInterceptor(new SecureTimeInterceptor(pinRetryController));
+    /**
+     * Client that needs neither the app nor any other Android class, for tests. Callbacks of asynchronous calls run
+     * on the calling thread instead of the main looper.
+     *
+     * @param clientBuilder
+     *            the HTTP client to build on
+     */
+    protected RetrofitClient(String baseUrl, OkHttpClient.Builder clientBuilder) {
+        this(baseUrl, clientBuilder, MoreExecutors.directExecutor());
+    }
+
+    private RetrofitClient(String baseUrl, OkHttpClient.Builder clientBuilder, @Nullable Executor callbackExecutor) {
+        clientBuilder.addNetworkInterceptor(new RevalidateInterceptor());
+        clientBuilder.interceptors().add(0, new NotModifiedInterceptor());
 
         OkHttpClient okClient = clientBuilder.build();
 
-        executor = Executors.newSingleThreadExecutor();
         moshiBuilder = new Moshi.Builder();
         retrofitBuilder = new Retrofit.Builder().client(okClient).baseUrl(baseUrl);
+        if (callbackExecutor != null) {
+            retrofitBuilder.callbackExecutor(callbackExecutor);
+        }
+    }
+
+    private static OkHttpClient.Builder appClientBuilder() {
+        OkHttpClient.Builder clientBuilder = HttpRuntime.client().newBuilder();
+        clientBuilder.cache(getCache());
+
+        PinRetryController pinRetryController = new PinRetryController(WalletApplication.getInstance());
+        clientBuilder.addInterceptor(new SecureTimeInterceptor(pinRetryController));
+        return clientBuilder;
+    }
+
+    /** Bounded disk cache shared by all rate sources. */
+    private static synchronized Cache getCache() {
+        if (cache == null) {
+            File directory = new File(WalletApplication.getInstance().getCacheDir(), HTTP_CACHE_DIRECTORY);
+            cache = new Cache(directory, HTTP_CACHE_SIZE);
+        }
+        return cache;
+    }
+
+    /**
+     * Tells this client whether the rates currently stored came from it. Only then may a revalidated response be
+     * answered with a {@link RatesNotModifiedException} instead of the cached body.
+     */
+    void setLastDelivered(boolean lastDelivered) {
+        this.lastDelivered = lastDelivered;
     }
 
     public interface Callback<T> {
@@ -61,7 +112,43 @@ public abstract class RetrofitClient {
         void onError(Exception e, boolean otpRequired);
     }
 
-    private class SecureTimeInterceptor implements Interceptor {
+    /**
+     * Makes responses that carry a validator cacheable, but never fresh, so that every request becomes a conditional
+     * GET. Rate sources rarely send caching headers of their own.
+     */
+    private static class RevalidateInterceptor implements Interceptor {
+
+        @Override
+        public Response intercept(@NonNull Chain chain) throws IOException {
+            Response response = chain.proceed(chain.request());
+            boolean hasValidator = response.header("ETag") != null || response.header("Last-Modified") != null;
+            if (!"GET".equals(chain.request().method()) || !hasValidator) {
+                return response;
+            }
+            return response.newBuilder()
+                    .header("Cache-Control", "no-cache")
+                    .removeHeader("Pragma")
+                    .removeHeader("Expires")
+                    .build();
+        }
+    }
+
+    private class NotModifiedInterceptor implements Interceptor {
+
+        @Override
+        public Response intercept(@NonNull Chain chain) throws IOException {
+            Response response = chain.proceed(chain.request());
+            Response networkResponse = response.networkResponse();
+            if (lastDelivered && response.cacheResponse() != null && networkResponse != null
+                    && networkResponse.code() == HttpURLConnection.HTTP_NOT_MODIFIED) {
+                response.close();
+                throw new RatesNotModifiedException(chain.request().url() + " not modified");
+            }
+            return response;
+        }
+    }
+
+    private static class SecureTimeInterceptor implements Interceptor {
 
         private PinRetryController pinRetryController;
 
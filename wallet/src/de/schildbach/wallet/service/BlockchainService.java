@@ -52,4 +52,7 @@ public interface BlockchainService {
     List<Peer> getConnectedPeers();
 
     List<StoredBlock> getRecentBlocks(int maxBlocks);
+
+    /** Recent sync telemetry events, oldest first. */
+    List<SyncTelemetry.Event> getSyncTelemetry();
 }
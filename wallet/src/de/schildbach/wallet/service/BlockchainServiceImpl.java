@@ -25,8 +25,10 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Date;
 import java.util.EnumSet;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
@@ -81,11 +83,15 @@ import de.schildbach.wallet.WalletApplication;
 import de.schildbach.wallet.WalletBalanceWidgetProvider;
 import de.schildbach.wallet.data.AddressBookProvider;
 import de.schildbach.wallet.AppDatabase;
+import de.schildbach.wallet.rates.ExchangeRateHistory;
+import de.schildbach.wallet.rates.ExchangeRateHistoryEntry;
+import de.schildbach.wallet.rates.ExchangeRatesSnapshot;
 import de.schildbach.wallet.service.BlockchainState.Impediment;
 import de.schildbach.wallet.ui.WalletActivity;
 import de.schildbach.wallet.util.BlockchainStateUtils;
 import de.schildbach.wallet.util.CrashReporter;
 import de.schildbach.wallet.util.ThrottlingWalletChangeListener;
+import de.schildbach.wallet.util.TransactionFacts;
 import de.schildbach.wallet.util.WalletUtils;
 import de.schildbach.wallet_test.R;
 
@@ -126,6 +132,7 @@ public class BlockchainServiceImpl extends android.app.Service implements Blockc
     private BlockStore blockStore;
     private File blockChainFile;
     private BlockChain blockChain;
+    private RecentBlockCache recentBlockCache;
     private InputStream bootStrapStream;
     @Nullable
     private PeerGroup peerGroup;
@@ -135,6 +142,9 @@ public class BlockchainServiceImpl extends android.app.Service implements Blockc
     private WakeLock wakeLock;
 
     private PeerConnectivityListener peerConnectivityListener;
+    private PeerScoreBook peerScoreBook;
+    private ExchangeRateHistory exchangeRateHistory;
+    private final SyncTelemetry syncTelemetry = new SyncTelemetry(SYNC_TELEMETRY_SIZE);
     private NotificationManager nm;
     private ConnectivityManager connectivityManager;
     private final Set<Impediment> impediments = EnumSet.noneOf(Impediment.class);
@@ -158,6 +168,13 @@ public class BlockchainServiceImpl extends android.app.Service implements Blockc
     private static final long APPWIDGET_THROTTLE_MS = DateUtils.SECOND_IN_MILLIS;
     private static final long BLOCKCHAIN_STATE_BROADCAST_THROTTLE_MS = DateUtils.SECOND_IN_MILLIS;
     private static final long TX_EXCHANGE_RATE_TIME_THRESHOLD_MS = TimeUnit.MINUTES.toMillis(180);
+    private static final int RECENT_BLOCKS_CACHE_SIZE = 64;
+    private static final int ENOUGH_DISCOVERED_PEERS = 10;
+    private static final int MIN_DISCOVERY_SOURCES = 2;
+    private static final long SEED_PEERS_FALLBACK_DELAY_MS = 3 * DateUtils.SECOND_IN_MILLIS;
+    private static final long DISCOVERY_SOURCES_GRACE_MS = DateUtils.SECOND_IN_MILLIS;
+    private static final int SYNC_TELEMETRY_SIZE = 256;
+    private static final int MASTERNODE_LIST_MAX_LAG = 8;
 
     private static final Logger log = LoggerFactory.getLogger(BlockchainServiceImpl.class);
 
@@ -183,23 +200,38 @@ public class BlockchainServiceImpl extends android.app.Service implements Blockc
 
             if (tx.getExchangeRate() == null && ((!replaying || insideTxExchangeRateTimeThreshold) || tx.getConfidence().getConfidenceType() == ConfidenceType.PENDING)) {
                 try {
-                    final de.schildbach.wallet.rates.ExchangeRate exchangeRate = AppDatabase.getAppDatabase()
-                            .exchangeRatesDao().getRateSync(config.getExchangeCurrencyCode());
+                    final de.schildbach.wallet.rates.ExchangeRate exchangeRate = ExchangeRatesSnapshot.getInstance()
+                            .getRate(config.getExchangeCurrencyCode());
                     if (exchangeRate != null) {
                         log.info("Setting exchange rate on received transaction.  Rate:  " + exchangeRate.toString() + " tx: " + tx.getHashAsString());
                         tx.setExchangeRate(new ExchangeRate(Coin.COIN, exchangeRate.getFiat()));
-                        application.saveWallet();
+                        application.saveExchangeRate(tx);
                     }
                 } catch (Exception e) {
                     log.error("Failed to get exchange rate", e);
                 }
+            } else if (tx.getExchangeRate() == null && tx.getUpdateTime() != null) {
+                // replaying an old transaction, value it at the rate of its time if we recorded one
+                try {
+                    final ExchangeRateHistoryEntry historicRate = exchangeRateHistory
+                            .getRateAt(config.getExchangeCurrencyCode(), tx.getUpdateTime().getTime());
+                    if (historicRate != null) {
+                        log.info("Setting historic exchange rate on received transaction.  Rate:  " + historicRate
+                                + " tx: " + tx.getHashAsString());
+                        tx.setExchangeRate(new ExchangeRate(Coin.COIN, historicRate.getFiat()));
+                        application.saveExchangeRate(tx);
+                    }
+                } catch (Exception e) {
+                    log.error("Failed to get historic exchange rate", e);
+                }
             }
 
             transactionsReceived.incrementAndGet();
 
 
-            final Address address = WalletUtils.getWalletAddressOfReceived(tx, wallet);
-            final Coin amount = tx.getValue(wallet);
+            final TransactionFacts facts = WalletUtils.getTransactionFacts(tx, wallet);
+            final Address address = facts.address;
+            final Coin amount = facts.value;
             final ConfidenceType confidenceType = tx.getConfidence().getConfidenceType();
 
             handler.post(new Runnable() {
@@ -248,13 +280,17 @@ public class BlockchainServiceImpl extends android.app.Service implements Blockc
         final String msg = getString(R.string.notification_coins_received_msg,
                 btcFormat.format(notificationAccumulatedAmount)) + msgSuffix;
 
+        final List<String> addressStrs = new ArrayList<String>(notificationAddresses.size());
+        for (final Address notificationAddress : notificationAddresses)
+            addressStrs.add(notificationAddress.toBase58());
+        final Map<String, String> labels = AddressBookProvider.resolveLabels(getApplicationContext(), addressStrs);
+
         final StringBuilder text = new StringBuilder();
-        for (final Address notificationAddress : notificationAddresses) {
+        for (final String addressStr : addressStrs) {
             if (text.length() > 0)
                 text.append(", ");
 
-            final String addressStr = notificationAddress.toBase58();
-            final String label = AddressBookProvider.resolveLabel(getApplicationContext(), addressStr);
+            final String label = labels.get(addressStr);
             text.append(label != null ? label : addressStr);
         }
 
@@ -291,6 +327,7 @@ public class BlockchainServiceImpl extends android.app.Service implements Blockc
 
         @Override
         public void onPeerConnected(final Peer peer, final int peerCount) {
+            syncTelemetry.phaseEnded(SyncTelemetry.Phase.CONNECT);
             this.peerCount = peerCount;
             changed(peerCount);
         }
@@ -343,6 +380,12 @@ public class BlockchainServiceImpl extends android.app.Service implements Blockc
         @Override
         public void onBlocksDownloaded(final Peer peer, final Block block, final FilteredBlock filteredBlock,
                 final int blocksLeft) {
+            peerScoreBook.onBlocksDownloaded(peer);
+            syncTelemetry.onBlocksDownloaded(peer, block, filteredBlock);
+            if (blocksLeft == 0) {
+                syncTelemetry.phaseEnded(SyncTelemetry.Phase.HEADERS);
+                syncTelemetry.phaseEnded(SyncTelemetry.Phase.FILTERED_BLOCKS);
+            }
             delayHandler.removeCallbacksAndMessages(null);
 
             final long now = System.currentTimeMillis();
@@ -358,6 +401,7 @@ public class BlockchainServiceImpl extends android.app.Service implements Blockc
                 lastMessageTime.set(System.currentTimeMillis());
 
                 config.maybeIncrementBestChainHeightEver(blockChain.getChainHead().getHeight());
+                updateMasternodeListPhase();
                 broadcastBlockchainState();
             }
         };
@@ -432,6 +476,8 @@ public class BlockchainServiceImpl extends android.app.Service implements Blockc
                 peerGroup.setUserAgent(Constants.USER_AGENT, application.packageInfo().versionName);
                 peerGroup.addConnectedEventListener(peerConnectivityListener);
                 peerGroup.addDisconnectedEventListener(peerConnectivityListener);
+                peerGroup.addConnectedEventListener(peerScoreBook);
+                peerGroup.addDisconnectedEventListener(peerScoreBook);
 
                 final int maxConnectedPeers = application.maxConnectedPeers();
 
@@ -443,17 +489,45 @@ public class BlockchainServiceImpl extends android.app.Service implements Blockc
                 peerGroup.setConnectTimeoutMillis(Constants.PEER_TIMEOUT_MS);
                 peerGroup.setPeerDiscoveryTimeoutMillis(Constants.PEER_DISCOVERY_TIMEOUT_MS);
 
-                peerGroup.addPeerDiscovery(new PeerDiscovery() {
+                final Map<String, PeerDiscovery> discoverySources = new LinkedHashMap<String, PeerDiscovery>();
+                final Map<String, PeerDiscovery> knownDiscoverySources = new LinkedHashMap<String, PeerDiscovery>();
+                final Map<String, PeerDiscovery> fallbackDiscoverySources = new LinkedHashMap<String, PeerDiscovery>();
+                if (!connectTrustedPeerOnly) {
+                    // good peers from last time, but never more than half, so that fresh peers always get a chance
+                    knownDiscoverySources.put("known", peerScoreBook.asDiscovery(ENOUGH_DISCOVERED_PEERS / 2));
                     //Keep Original code here for now
-                    //private final PeerDiscovery normalPeerDiscovery = MultiplexingDiscovery
-                    //        .forServices(Constants.NETWORK_PARAMETERS, 0);
-                    private final PeerDiscovery normalPeerDiscovery = new MultiplexingDiscovery(Constants.NETWORK_PARAMETERS, peerDiscoveryList);
+                    //discoverySources.put("DNS", MultiplexingDiscovery.forServices(Constants.NETWORK_PARAMETERS, 0));
+                    discoverySources.put("DNS", new MultiplexingDiscovery(Constants.NETWORK_PARAMETERS, peerDiscoveryList));
+                    discoverySources.put("DMN list", new PeerDiscovery() {
+                        @Override
+                        public InetSocketAddress[] getPeers(final long services, final long timeoutValue,
+                                final TimeUnit timeoutUnit) throws PeerDiscoveryException {
+                            // the list changes while syncing, so always use the latest
+                            final SimplifiedMasternodeList mnlist = org.bitcoinj.core.Context.get().masternodeListManager
+                                    .getListAtChainTip();
+                            return new MasternodePeerDiscovery(mnlist).getPeers(services, timeoutValue, timeoutUnit);
+                        }
 
+                        @Override
+                        public void shutdown() {
+                        }
+                    });
+                    // hardcoded and possibly stale, so only if DNS and the DMN list don't come up with enough
+                    if (Constants.NETWORK_PARAMETERS.getAddrSeeds() != null)
+                        fallbackDiscoverySources.put("seed", seedPeerDiscovery);
+                    else
+                        log.info("no seed peers specified for this network");
+                }
+                final ParallelPeerDiscovery parallelPeerDiscovery = new ParallelPeerDiscovery(discoverySources,
+                        knownDiscoverySources, fallbackDiscoverySources, ENOUGH_DISCOVERED_PEERS,
+                        MIN_DISCOVERY_SOURCES, SEED_PEERS_FALLBACK_DELAY_MS, DISCOVERY_SOURCES_GRACE_MS);
 
+                peerGroup.addPeerDiscovery(new PeerDiscovery() {
                     @Override
                     public InetSocketAddress[] getPeers(final long services, final long timeoutValue,
                             final TimeUnit timeoutUnit) throws PeerDiscoveryException {
                         final List<InetSocketAddress> peers = new LinkedList<InetSocketAddress>();
+                        syncTelemetry.phaseStarted(SyncTelemetry.Phase.DISCOVERY);
 
                         boolean needsTrimPeersWorkaround = false;
 
@@ -471,37 +545,16 @@ public class BlockchainServiceImpl extends android.app.Service implements Blockc
 
                         if (!connectTrustedPeerOnly) {
                             try {
-                                peers.addAll(
-                                        Arrays.asList(normalPeerDiscovery.getPeers(services, timeoutValue, timeoutUnit)));
+                                peers.addAll(Arrays
+                                        .asList(parallelPeerDiscovery.getPeers(services, timeoutValue, timeoutUnit)));
                             } catch (PeerDiscoveryException x) {
-                                //swallow and continue with another method of connection.
-                                log.info("DNS peer discovery failed: "+ x.getMessage());
-                                if(x.getCause() != null)
-                                    log.info(  "cause:  " + x.getCause().getMessage());
-                            }
-                            if(peers.size() < 10) {
-                                log.info("DNS peer discovery returned less than 10 nodes.  Adding DMN peers to the list to increase connections");
-                                try {
-                                    SimplifiedMasternodeList mnlist = org.bitcoinj.core.Context.get().masternodeListManager.getListAtChainTip();
-                                    MasternodePeerDiscovery discovery = new MasternodePeerDiscovery(mnlist);
-                                    peers.addAll(Arrays.asList(discovery.getPeers(services, timeoutValue, timeoutUnit)));
-                                } catch (PeerDiscoveryException x) {
-                                    //swallow and continue with another method of connection
-                                    log.info("DMN List peer discovery failed: "+ x.getMessage());
-
-                                }
-
-                                if(peers.size() < 10) {
-                                    if (Constants.NETWORK_PARAMETERS.getAddrSeeds() != null) {
-                                        log.info("DNS peer discovery returned less than 10 nodes.  Adding seed peers to the list to increase connections");
-                                        peers.addAll(Arrays.asList(seedPeerDiscovery.getPeers(services, timeoutValue, timeoutUnit)));
-                                    } else {
-                                        log.info("DNS peer discovery returned less than 10 nodes.  Unable to add seed peers (it is not specified for this network).");
-                                    }
-                                }
+                                //swallow, PeerGroup will retry
+                                log.info("peer discovery failed: " + x.getMessage());
                             }
                         }
 
+                        syncTelemetry.phaseEnded(SyncTelemetry.Phase.DISCOVERY);
+
                         // workaround because PeerGroup will shuffle peers
                         if (needsTrimPeersWorkaround)
                             while (peers.size() >= maxConnectedPeers)
@@ -512,20 +565,26 @@ public class BlockchainServiceImpl extends android.app.Service implements Blockc
 
                     @Override
                     public void shutdown() {
-                        normalPeerDiscovery.shutdown();
+                        parallelPeerDiscovery.shutdown();
                     }
                 });
 
                 // start peergroup
+                syncTelemetry.phaseStarted(SyncTelemetry.Phase.CONNECT);
+                updateMasternodeListPhase();
                 peerGroup.startAsync();
                 peerGroup.startBlockChainDownload(blockchainDownloadListener);
             } else if (!impediments.isEmpty() && peerGroup != null) {
                 log.info("stopping peergroup");
+                peerScoreBook.onStopping(peerGroup.getConnectedPeers());
+                peerGroup.removeDisconnectedEventListener(peerScoreBook);
+                peerGroup.removeConnectedEventListener(peerScoreBook);
                 peerGroup.removeDisconnectedEventListener(peerConnectivityListener);
                 peerGroup.removeConnectedEventListener(peerConnectivityListener);
                 peerGroup.removeWallet(wallet);
                 peerGroup.stopAsync();
                 peerGroup = null;
+                syncTelemetry.phasesEnded();
 
                 log.debug("releasing wakelock");
                 wakeLock.release();
@@ -557,6 +616,8 @@ public class BlockchainServiceImpl extends android.app.Service implements Blockc
         @Override
         public void onReceive(final Context context, final Intent intent) {
             final int chainHeight = blockChain.getBestChainHeight();
+            syncTelemetry.sample();
+            updateMasternodeListPhase();
 
             if (lastChainHeight > 0) {
                 final int numBlocksDownloaded = chainHeight - lastChainHeight;
@@ -644,10 +705,14 @@ public class BlockchainServiceImpl extends android.app.Service implements Blockc
         wakeLock = pm.newWakeLock(PowerManager.PARTIAL_WAKE_LOCK, lockName);
 
         application = (WalletApplication) getApplication();
+        application.ensureNotificationChannels();
         config = application.getConfiguration();
         final Wallet wallet = application.getWallet();
 
         peerConnectivityListener = new PeerConnectivityListener();
+        peerScoreBook = new PeerScoreBook(AppDatabase.getAppDatabase().peerRecordsDao());
+        exchangeRateHistory = new ExchangeRateHistory(AppDatabase.getAppDatabase());
+        application.setWalletSaveListener(syncTelemetry);
 
         broadcastPeerState(0);
 
@@ -664,6 +729,7 @@ public class BlockchainServiceImpl extends android.app.Service implements Blockc
         if (!blockChainFileExists) {
             log.info("blockchain does not exist, resetting wallet");
             wallet.reset();
+            application.getTransactionHistory().invalidate();
             SimplifiedMasternodeListManager manager = wallet.getContext().masternodeListManager;
             if(manager != null)
                 manager.resetMNList(true, true);
@@ -705,6 +771,10 @@ public class BlockchainServiceImpl extends android.app.Service implements Blockc
             throw new Error("blockchain cannot be created", x);
         }
 
+        recentBlockCache = new RecentBlockCache(blockStore, RECENT_BLOCKS_CACHE_SIZE);
+        blockChain.addNewBestBlockListener(Threading.SAME_THREAD, recentBlockCache);
+        blockChain.addReorganizeListener(Threading.SAME_THREAD, recentBlockCache);
+
         final IntentFilter intentFilter = new IntentFilter();
         intentFilter.addAction(ConnectivityManager.CONNECTIVITY_ACTION);
         intentFilter.addAction(Intent.ACTION_DEVICE_STORAGE_LOW);
@@ -802,6 +872,9 @@ public class BlockchainServiceImpl extends android.app.Service implements Blockc
         unregisterReceiver(connectivityReceiver);
 
         if (peerGroup != null) {
+            peerScoreBook.onStopping(peerGroup.getConnectedPeers());
+            peerGroup.removeDisconnectedEventListener(peerScoreBook);
+            peerGroup.removeConnectedEventListener(peerScoreBook);
             peerGroup.removeDisconnectedEventListener(peerConnectivityListener);
             peerGroup.removeConnectedEventListener(peerConnectivityListener);
             peerGroup.removeWallet(application.getWallet());
@@ -811,16 +884,21 @@ public class BlockchainServiceImpl extends android.app.Service implements Blockc
         }
 
         peerConnectivityListener.stop();
+        peerScoreBook.shutdown();
 
         delayHandler.removeCallbacksAndMessages(null);
 
+        blockChain.removeReorganizeListener(recentBlockCache);
+        blockChain.removeNewBestBlockListener(recentBlockCache);
+
         try {
             blockStore.close();
         } catch (final BlockStoreException x) {
             throw new RuntimeException(x);
         }
 
-        application.saveWallet();
+        application.saveWalletAndWait();
+        application.setWalletSaveListener(null);
 
         //Dash Specific
 
@@ -907,24 +985,23 @@ public class BlockchainServiceImpl extends android.app.Service implements Blockc
 
     @Override
     public List<StoredBlock> getRecentBlocks(final int maxBlocks) {
-        final List<StoredBlock> blocks = new ArrayList<StoredBlock>(maxBlocks);
-
-        try {
-            StoredBlock block = blockChain.getChainHead();
-
-            while (block != null) {
-                blocks.add(block);
-
-                if (blocks.size() >= maxBlocks)
-                    break;
+        return recentBlockCache.getRecentBlocks(blockChain.getChainHead(), maxBlocks);
+    }
 
-                block = block.getPrev(blockStore);
-            }
-        } catch (final BlockStoreException x) {
-            // swallow
-        }
+    @Override
+    public List<SyncTelemetry.Event> getSyncTelemetry() {
+        return syncTelemetry.getEvents();
+    }
 
-        return blocks;
+    private void updateMasternodeListPhase() {
+        final SimplifiedMasternodeListManager manager = application.getWallet().getContext().masternodeListManager;
+        if (manager == null)
+            return;
+        final long lag = blockChain.getBestChainHeight() - manager.getListAtChainTip().getHeight();
+        if (peerGroup != null && lag > MASTERNODE_LIST_MAX_LAG)
+            syncTelemetry.phaseStarted(SyncTelemetry.Phase.MASTERNODE_LIST);
+        else
+            syncTelemetry.phaseEnded(SyncTelemetry.Phase.MASTERNODE_LIST);
     }
 
     private void broadcastPeerState(final int numPeers) {
@@ -72,6 +72,7 @@ public final class InactivityNotificationService extends Service {
 
         nm = (NotificationManager) getSystemService(Context.NOTIFICATION_SERVICE);
         application = (WalletApplication) getApplication();
+        application.ensureNotificationChannels();
         config = application.getConfiguration();
         wallet = application.getWallet();
     }
@@ -0,0 +1,261 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.schildbach.wallet.service;
+
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.bitcoinj.net.discovery.PeerDiscovery;
+import org.bitcoinj.net.discovery.PeerDiscoveryException;
+import org.bitcoinj.utils.ContextPropagatingThreadFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Queries the live peer discovery sources at the same time and returns as soon as enough distinct peers have arrived
+ * from more than one source, or a short grace period after enough have arrived from fewer, or when every source has
+ * answered, or when the timeout is up. Fallback sources, like the
+ * hardcoded seeds, are only queried if the live sources haven't produced enough peers after a short delay or are all
+ * done. Peers from known sources, like the ones that served us before, are merged in but don't count as a source,
+ * so that they never end discovery on their own. Sources that are still running by then are cancelled.
+ *
+ * Latency and yield of each source are logged and kept for {@link #getSourceResults()}.
+ */
+final class ParallelPeerDiscovery implements PeerDiscovery {
+    private final Map<String, PeerDiscovery> sources;
+    private final Map<String, PeerDiscovery> knownSources;
+    private final Map<String, PeerDiscovery> fallbackSources;
+    private final int enoughPeers;
+    private final int minSources;
+    private final long fallbackDelayMs;
+    private final long diversityGraceMs;
+    private final ExecutorService executor;
+    private final Map<String, SourceResult> sourceResults = new LinkedHashMap<String, SourceResult>();
+
+    private static final Logger log = LoggerFactory.getLogger(ParallelPeerDiscovery.class);
+
+    public static final class SourceResult {
+        public final String name;
+        public final long latencyMs;
+        public final int numPeers;
+        public final boolean failed;
+        public final boolean cancelled;
+
+        private SourceResult(final String name, final long latencyMs, final int numPeers, final boolean failed,
+                final boolean cancelled) {
+            this.name = name;
+            this.latencyMs = latencyMs;
+            this.numPeers = numPeers;
+            this.failed = failed;
+            this.cancelled = cancelled;
+        }
+
+        @Override
+        public String toString() {
+            return name + ": " + (cancelled ? "cancelled after" : (failed ? "failed" : numPeers + " peers") + " in")
+                    + " " + latencyMs + " ms";
+        }
+    }
+
+    /**
+     * @param sources
+     *            live discovery sources by name, in order of preference
+     * @param knownSources
+     *            discovery sources by name that are queried together with the live ones, but don't count toward
+     *            minSources
+     * @param fallbackSources
+     *            discovery sources by name that are only queried if the live ones don't come up with enough peers
+     * @param enoughPeers
+     *            number of distinct peers after which the remaining sources are not waited for
+     * @param minSources
+     *            number of sources that need to have contributed peers before the remaining ones are not waited for
+     * @param fallbackDelayMs
+     *            time after which the fallback sources are queried if there aren't enough peers yet
+     * @param diversityGraceMs
+     *            time the remaining sources are waited for once there are enough peers, but from fewer than minSources
+     */
+    public ParallelPeerDiscovery(final Map<String, PeerDiscovery> sources,
+            final Map<String, PeerDiscovery> knownSources, final Map<String, PeerDiscovery> fallbackSources,
+            final int enoughPeers, final int minSources, final long fallbackDelayMs, final long diversityGraceMs) {
+        this.sources = sources;
+        this.knownSources = knownSources;
+        this.fallbackSources = fallbackSources;
+        this.enoughPeers = enoughPeers;
+        this.minSources = minSources;
+        this.fallbackDelayMs = fallbackDelayMs;
+        this.diversityGraceMs = diversityGraceMs;
+        this.executor = Executors.newFixedThreadPool(Math.max(sources.size() + knownSources.size() + fallbackSources.size(), 1),
+                new ContextPropagatingThreadFactory("peer discovery"));
+    }
+
+    @Override
+    public InetSocketAddress[] getPeers(final long services, final long timeoutValue, final TimeUnit timeoutUnit)
+            throws PeerDiscoveryException {
+        final CompletionService<SourceResultAndPeers> completionService = new ExecutorCompletionService<SourceResultAndPeers>(
+                executor);
+        final Map<String, Future<SourceResultAndPeers>> running = new LinkedHashMap<String, Future<SourceResultAndPeers>>();
+        final long start = System.currentTimeMillis();
+        final long deadline = start + timeoutUnit.toMillis(timeoutValue);
+        final long fallbackAt = start + fallbackDelayMs;
+
+        submit(completionService, running, knownSources, services, timeoutValue, timeoutUnit, start);
+        submit(completionService, running, sources, services, timeoutValue, timeoutUnit, start);
+        boolean fallbackStarted = fallbackSources.isEmpty();
+
+        final Set<InetSocketAddress> peers = new LinkedHashSet<InetSocketAddress>();
+        int contributingSources = 0;
+        long enoughAt = 0; // when there were enough peers first, 0 if not yet
+        try {
+            while (true) {
+                final long now = System.currentTimeMillis();
+                if (peers.size() >= enoughPeers) {
+                    if (contributingSources >= minSources || contributingSources >= sources.size())
+                        break; // enough
+                    if (now >= enoughAt + diversityGraceMs) {
+                        log.info("{} peers from {} source(s), not waiting any longer for more sources", peers.size(),
+                                contributingSources);
+                        break; // enough, though not as diverse as hoped
+                    }
+                }
+                if (!fallbackStarted && peers.size() < enoughPeers && (now >= fallbackAt || running.isEmpty())) {
+                    log.info("{} peers after {} ms, querying fallback sources", peers.size(), now - start);
+                    submit(completionService, running, fallbackSources, services, timeoutValue, timeoutUnit, start);
+                    fallbackStarted = true;
+                }
+                if (running.isEmpty())
+                    break; // everybody answered
+
+                final long wakeup;
+                if (peers.size() >= enoughPeers)
+                    wakeup = Math.min(deadline, enoughAt + diversityGraceMs);
+                else if (!fallbackStarted)
+                    wakeup = Math.min(deadline, fallbackAt);
+                else
+                    wakeup = deadline;
+                final long remaining = wakeup - now;
+                final Future<SourceResultAndPeers> done = remaining > 0
+                        ? completionService.poll(remaining, TimeUnit.MILLISECONDS) : completionService.poll();
+                if (done == null) {
+                    if (System.currentTimeMillis() >= deadline)
+                        break; // timeout
+                    continue;
+                }
+
+                final SourceResultAndPeers result = done.get();
+                running.remove(result.result.name);
+                if (peers.addAll(Arrays.asList(result.peers)) && !knownSources.containsKey(result.result.name))
+                    contributingSources++;
+                if (enoughAt == 0 && peers.size() >= enoughPeers)
+                    enoughAt = System.currentTimeMillis();
+                log.info("{}, {} distinct so far", result.result, peers.size());
+                putSourceResult(result.result);
+            }
+        } catch (final InterruptedException x) {
+            Thread.currentThread().interrupt();
+        } catch (final ExecutionException x) {
+            throw new PeerDiscoveryException(x.getCause());
+        } finally {
+            final long elapsed = System.currentTimeMillis() - start;
+            for (final Map.Entry<String, Future<SourceResultAndPeers>> entry : running.entrySet()) {
+                entry.getValue().cancel(true);
+                final SourceResult result = new SourceResult(entry.getKey(), elapsed, 0, false, true);
+                log.info("{}", result);
+                putSourceResult(result);
+            }
+        }
+
+        if (peers.isEmpty())
+            throw new PeerDiscoveryException("no peers from any source");
+
+        return peers.toArray(new InetSocketAddress[0]);
+    }
+
+    private void submit(final CompletionService<SourceResultAndPeers> completionService,
+            final Map<String, Future<SourceResultAndPeers>> running, final Map<String, PeerDiscovery> sources,
+            final long services, final long timeoutValue, final TimeUnit timeoutUnit, final long start) {
+        for (final Map.Entry<String, PeerDiscovery> source : sources.entrySet()) {
+            final String name = source.getKey();
+            running.put(name, completionService.submit(new Callable<SourceResultAndPeers>() {
+                @Override
+                public SourceResultAndPeers call() {
+                    try {
+                        final InetSocketAddress[] peers = source.getValue().getPeers(services, timeoutValue,
+                                timeoutUnit);
+                        return new SourceResultAndPeers(
+                                new SourceResult(name, System.currentTimeMillis() - start, peers.length, false, false),
+                                peers);
+                    } catch (final PeerDiscoveryException | RuntimeException x) {
+                        log.info("{} peer discovery failed: {}", name, x.getMessage());
+                        return new SourceResultAndPeers(
+                                new SourceResult(name, System.currentTimeMillis() - start, 0, true, false),
+                                new InetSocketAddress[0]);
+                    }
+                }
+            }));
+        }
+    }
+
+    private void putSourceResult(final SourceResult result) {
+        synchronized (sourceResults) {
+            sourceResults.put(result.name, result);
+        }
+    }
+
+    /** Latest result of each source that was queried, including the ones that were cancelled. */
+    public List<SourceResult> getSourceResults() {
+        synchronized (sourceResults) {
+            return Collections.unmodifiableList(new ArrayList<SourceResult>(sourceResults.values()));
+        }
+    }
+
+    @Override
+    public void shutdown() {
+        executor.shutdownNow();
+        for (final PeerDiscovery source : sources.values())
+            source.shutdown();
+        for (final PeerDiscovery source : knownSources.values())
+            source.shutdown();
+        for (final PeerDiscovery source : fallbackSources.values())
+            source.shutdown();
+    }
+
+    private static final class SourceResultAndPeers {
+        private final SourceResult result;
+        private final InetSocketAddress[] peers;
+
+        private SourceResultAndPeers(final SourceResult result, final InetSocketAddress[] peers) {
+            this.result = result;
+            this.peers = peers;
+        }
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.schildbach.wallet.service;
+
+import android.arch.persistence.room.Entity;
+import android.support.annotation.NonNull;
+
+/**
+ * What we remember about a peer across service restarts.
+ */
+@Entity(tableName = "peers", primaryKeys = { "host", "port" })
+public class PeerRecord {
+
+    @NonNull
+    private String host;
+    private int port;
+    /** last time we connected to or tried to connect to this peer */
+    private long lastSeen;
+    /** last time a handshake with this peer succeeded, or 0 */
+    private long lastConnected;
+    private int connects;
+    private int failures;
+    private long blocksServed;
+    /** smoothed ping time, or 0 if never measured */
+    private long pingMs;
+    private String lastDisconnectReason;
+
+    public PeerRecord(@NonNull String host, int port) {
+        this.host = host;
+        this.port = port;
+    }
+
+    @NonNull
+    public String getHost() {
+        return host;
+    }
+
+    public int getPort() {
+        return port;
+    }
+
+    public long getLastSeen() {
+        return lastSeen;
+    }
+
+    public void setLastSeen(long lastSeen) {
+        this.lastSeen = lastSeen;
+    }
+
+    public long getLastConnected() {
+        return lastConnected;
+    }
+
+    public void setLastConnected(long lastConnected) {
+        this.lastConnected = lastConnected;
+    }
+
+    public int getConnects() {
+        return connects;
+    }
+
+    public void setConnects(int connects) {
+        this.connects = connects;
+    }
+
+    public int getFailures() {
+        return failures;
+    }
+
+    public void setFailures(int failures) {
+        this.failures = failures;
+    }
+
+    public long getBlocksServed() {
+        return blocksServed;
+    }
+
+    public void setBlocksServed(long blocksServed) {
+        this.blocksServed = blocksServed;
+    }
+
+    public long getPingMs() {
+        return pingMs;
+    }
+
+    public void setPingMs(long pingMs) {
+        this.pingMs = pingMs;
+    }
+
+    public String getLastDisconnectReason() {
+        return lastDisconnectReason;
+    }
+
+    public void setLastDisconnectReason(String lastDisconnectReason) {
+        this.lastDisconnectReason = lastDisconnectReason;
+    }
+
+    @Override
+    public String toString() {
+        return host + ":" + port + " connects=" + connects + " failures=" + failures + " blocks=" + blocksServed
+                + " ping=" + pingMs + "ms";
+    }
+}
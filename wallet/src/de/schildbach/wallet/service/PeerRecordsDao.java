@@ -0,0 +1,42 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.schildbach.wallet.service;
+
+import android.arch.persistence.room.Dao;
+import android.arch.persistence.room.Insert;
+import android.arch.persistence.room.OnConflictStrategy;
+import android.arch.persistence.room.Query;
+
+import java.util.List;
+
+@Dao
+public interface PeerRecordsDao {
+
+    @Query("SELECT * FROM peers WHERE host = :host AND port = :port LIMIT 1")
+    PeerRecord get(String host, int port);
+
+    @Query("SELECT * FROM peers WHERE lastConnected > :since")
+    List<PeerRecord> getConnectedSince(long since);
+
+    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    void insert(PeerRecord peerRecord);
+
+    @Query("DELETE FROM peers WHERE lastSeen < :before")
+    int deleteNotSeenSince(long before);
+
+}
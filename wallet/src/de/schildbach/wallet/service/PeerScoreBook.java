@@ -0,0 +1,233 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.schildbach.wallet.service;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Nullable;
+
+import org.bitcoinj.core.Peer;
+import org.bitcoinj.core.PeerAddress;
+import org.bitcoinj.core.listeners.PeerConnectedEventListener;
+import org.bitcoinj.core.listeners.PeerDisconnectedEventListener;
+import org.bitcoinj.net.discovery.PeerDiscovery;
+import org.bitcoinj.net.discovery.PeerDiscoveryException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Stopwatch;
+import com.google.common.net.InetAddresses;
+
+/**
+ * Keeps score of the peers we talk to in the {@code peers} table, and offers the best ones that recently served us as
+ * a discovery source, so that a restarted service reconnects to some peers known to be good. They are only ever
+ * merged with peers from fresh sources, see {@link ParallelPeerDiscovery}, so the set of peers keeps changing.
+ *
+ * Handshake successes and failures, blocks served, ping time and the way each session ended are recorded. All
+ * database access happens on a private thread.
+ */
+final class PeerScoreBook implements PeerConnectedEventListener, PeerDisconnectedEventListener {
+    private final PeerRecordsDao dao;
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+    private final Map<Peer, Session> sessions = new HashMap<Peer, Session>();
+
+    private static final long RECENT_MS = TimeUnit.DAYS.toMillis(7);
+    private static final long RETENTION_MS = TimeUnit.DAYS.toMillis(30);
+    private static final long UNKNOWN_PING_MS = 500;
+    private static final double MIN_RELIABILITY = 0.5;
+
+    private static final Logger log = LoggerFactory.getLogger(PeerScoreBook.class);
+
+    public PeerScoreBook(final PeerRecordsDao dao) {
+        this.dao = dao;
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                final int deleted = dao.deleteNotSeenSince(System.currentTimeMillis() - RETENTION_MS);
+                if (deleted > 0)
+                    log.info("forgot {} peers not seen for a while", deleted);
+            }
+        });
+    }
+
+    @Override
+    public void onPeerConnected(final Peer peer, final int peerCount) {
+        final long now = System.currentTimeMillis();
+        synchronized (sessions) {
+            sessions.put(peer, new Session(now));
+        }
+        final PeerAddress address = peer.getAddress();
+        update(address, new Update() {
+            @Override
+            public void apply(final PeerRecord record) {
+                record.setLastSeen(now);
+                record.setLastConnected(now);
+                record.setConnects(record.getConnects() + 1);
+            }
+        });
+    }
+
+    @Override
+    public void onPeerDisconnected(final Peer peer, final int peerCount) {
+        final Session session;
+        synchronized (sessions) {
+            session = sessions.remove(peer);
+        }
+        endSession(peer, session, null);
+    }
+
+    public void onBlocksDownloaded(final Peer peer) {
+        synchronized (sessions) {
+            final Session session = sessions.get(peer);
+            if (session != null)
+                session.blocks++;
+        }
+    }
+
+    /** Records the sessions of peers that are about to be disconnected by shutting down the peer group. */
+    public void onStopping(final List<Peer> connectedPeers) {
+        for (final Peer peer : connectedPeers) {
+            final Session session;
+            synchronized (sessions) {
+                session = sessions.remove(peer);
+            }
+            if (session != null)
+                endSession(peer, session, "stopped");
+        }
+    }
+
+    private void endSession(final Peer peer, @Nullable final Session session, @Nullable final String reason) {
+        final long now = System.currentTimeMillis();
+        final long pingMs = peer.getPingTime();
+        update(peer.getAddress(), new Update() {
+            @Override
+            public void apply(final PeerRecord record) {
+                record.setLastSeen(now);
+                if (session == null) {
+                    record.setFailures(record.getFailures() + 1);
+                    record.setLastDisconnectReason("no handshake");
+                    return;
+                }
+                record.setBlocksServed(record.getBlocksServed() + session.blocks);
+                if (pingMs > 0 && pingMs < Long.MAX_VALUE)
+                    record.setPingMs(record.getPingMs() == 0 ? pingMs : (record.getPingMs() * 3 + pingMs) / 4);
+                record.setLastDisconnectReason(reason != null ? reason
+                        : "disconnected after " + TimeUnit.MILLISECONDS.toSeconds(now - session.start) + "s");
+            }
+        });
+    }
+
+    private void update(final PeerAddress address, final Update update) {
+        final InetAddress addr = address.getAddr();
+        if (addr == null)
+            return; // only numeric addresses can be dialed back without resolving
+        final String host = addr.getHostAddress();
+        final int port = address.getPort();
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                PeerRecord record = dao.get(host, port);
+                if (record == null)
+                    record = new PeerRecord(host, port);
+                update.apply(record);
+                dao.insert(record);
+            }
+        });
+    }
+
+    /** Discovery source returning up to maxPeers of the best peers that completed a handshake recently. */
+    public PeerDiscovery asDiscovery(final int maxPeers) {
+        return new PeerDiscovery() {
+            @Override
+            public InetSocketAddress[] getPeers(final long services, final long timeoutValue,
+                    final TimeUnit timeoutUnit) throws PeerDiscoveryException {
+                final Stopwatch watch = Stopwatch.createStarted();
+                final List<PeerRecord> records = new ArrayList<PeerRecord>();
+                for (final PeerRecord record : dao.getConnectedSince(System.currentTimeMillis() - RECENT_MS))
+                    if (reliability(record) >= MIN_RELIABILITY)
+                        records.add(record);
+                Collections.sort(records, BY_SCORE_DESCENDING);
+
+                final List<InetSocketAddress> peers = new ArrayList<InetSocketAddress>(maxPeers);
+                for (final PeerRecord record : records) {
+                    if (peers.size() >= maxPeers)
+                        break;
+                    try {
+                        peers.add(new InetSocketAddress(InetAddresses.forString(record.getHost()), record.getPort()));
+                    } catch (final IllegalArgumentException x) {
+                        log.info("skipping unparseable peer {}", record.getHost());
+                    }
+                }
+                watch.stop();
+                log.info("{} of {} known peers selected, took {}", peers.size(), records.size(), watch);
+                if (!peers.isEmpty())
+                    log.debug("best known peer: {}", records.get(0));
+                return peers.toArray(new InetSocketAddress[0]);
+            }
+
+            @Override
+            public void shutdown() {
+            }
+        };
+    }
+
+    private static double reliability(final PeerRecord record) {
+        return (record.getConnects() + 1.0) / (record.getConnects() + record.getFailures() + 2.0);
+    }
+
+    static double score(final PeerRecord record) {
+        final long pingMs = record.getPingMs() > 0 ? record.getPingMs() : UNKNOWN_PING_MS;
+        final double speed = 1000.0 / (pingMs + 100);
+        final double usefulness = 1 + Math.log1p(record.getBlocksServed()) / 10;
+        return reliability(record) * speed * usefulness;
+    }
+
+    private static final Comparator<PeerRecord> BY_SCORE_DESCENDING = new Comparator<PeerRecord>() {
+        @Override
+        public int compare(final PeerRecord lhs, final PeerRecord rhs) {
+            return Double.compare(score(rhs), score(lhs));
+        }
+    };
+
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    private interface Update {
+        void apply(PeerRecord record);
+    }
+
+    private static final class Session {
+        private final long start;
+        private long blocks = 0;
+
+        private Session(final long start) {
+            this.start = start;
+        }
+    }
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.schildbach.wallet.service;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.bitcoinj.core.StoredBlock;
+import org.bitcoinj.core.listeners.NewBestBlockListener;
+import org.bitcoinj.core.listeners.ReorganizeListener;
+import org.bitcoinj.store.BlockStore;
+import org.bitcoinj.store.BlockStoreException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Ring buffer of the most recent headers of the best chain, so that listing recent blocks doesn't need a block store
+ * lookup per block.
+ *
+ * New best blocks that extend the cached tip are appended as they are connected. Anything else, including a
+ * reorganize, empties the buffer and it gets refilled from the block store on the next read.
+ */
+final class RecentBlockCache implements NewBestBlockListener, ReorganizeListener {
+    private final BlockStore blockStore;
+    private final StoredBlock[] ring;
+    private int newest = -1;
+    private int size = 0;
+
+    private static final Logger log = LoggerFactory.getLogger(RecentBlockCache.class);
+
+    public RecentBlockCache(final BlockStore blockStore, final int capacity) {
+        this.blockStore = blockStore;
+        this.ring = new StoredBlock[capacity];
+    }
+
+    @Override
+    public synchronized void notifyNewBestBlock(final StoredBlock block) {
+        if (size > 0 && !block.getHeader().getPrevBlockHash().equals(ring[newest].getHeader().getHash()))
+            clear();
+        push(block);
+    }
+
+    @Override
+    public synchronized void reorganize(final StoredBlock splitPoint, final List<StoredBlock> oldBlocks,
+            final List<StoredBlock> newBlocks) {
+        clear();
+    }
+
+    /**
+     * Returns up to maxBlocks blocks, starting at the given chain head and going back. If the block store fails on the
+     * way, returns the blocks collected until then.
+     */
+    public synchronized List<StoredBlock> getRecentBlocks(final StoredBlock chainHead, final int maxBlocks) {
+        if (size == 0 || !ring[newest].getHeader().getHash().equals(chainHead.getHeader().getHash()))
+            refill(chainHead);
+
+        final List<StoredBlock> blocks = new ArrayList<StoredBlock>(maxBlocks);
+        for (int i = 0; i < size && blocks.size() < maxBlocks; i++)
+            blocks.add(ring[(newest - i + ring.length) % ring.length]);
+
+        // more requested than we keep
+        if (blocks.size() < maxBlocks && !blocks.isEmpty()) {
+            try {
+                StoredBlock block = blocks.get(blocks.size() - 1).getPrev(blockStore);
+                while (block != null && blocks.size() < maxBlocks) {
+                    blocks.add(block);
+                    block = block.getPrev(blockStore);
+                }
+            } catch (final BlockStoreException x) {
+                log.info("problem walking back past the recent blocks, returning " + blocks.size(), x);
+            }
+        }
+
+        return blocks;
+    }
+
+    private void refill(final StoredBlock chainHead) {
+        final List<StoredBlock> blocks = new ArrayList<StoredBlock>(ring.length);
+        try {
+            StoredBlock block = chainHead;
+            while (block != null && blocks.size() < ring.length) {
+                blocks.add(block);
+                block = block.getPrev(blockStore);
+            }
+        } catch (final BlockStoreException x) {
+            // keep what we have, it is still a contiguous run back from the chain head
+            log.info("problem refilling recent blocks, keeping " + blocks.size(), x);
+        }
+
+        clear();
+        for (int i = blocks.size() - 1; i >= 0; i--)
+            push(blocks.get(i));
+    }
+
+    private void push(final StoredBlock block) {
+        newest = (newest + 1) % ring.length;
+        ring[newest] = block;
+        if (size < ring.length)
+            size++;
+    }
+
+    private void clear() {
+        for (int i = 0; i < ring.length; i++)
+            ring[i] = null;
+        newest = -1;
+        size = 0;
+    }
+}
@@ -0,0 +1,245 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.schildbach.wallet.service;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import javax.annotation.Nullable;
+
+import org.bitcoinj.core.Block;
+import org.bitcoinj.core.FilteredBlock;
+import org.bitcoinj.core.Peer;
+import org.bitcoinj.wallet.WalletFiles;
+
+/**
+ * Bounded record of where blockchain sync time goes: phase durations, block and byte throughput overall and per peer,
+ * and wallet save pauses. The oldest events are overwritten once the buffer is full.
+ *
+ * Phases are timed from {@link #phaseStarted(Phase)} to {@link #phaseEnded(Phase)}. Throughput is accumulated from
+ * {@link #onBlocksDownloaded(Peer, Block, FilteredBlock)} and turned into events by {@link #sample()}, which the service
+ * calls once a minute. Byte counts are message sizes, so they leave out protocol overhead.
+ */
+public final class SyncTelemetry implements WalletFiles.Listener {
+    public enum Phase {
+        DISCOVERY, CONNECT, HEADERS, FILTERED_BLOCKS, MASTERNODE_LIST
+    }
+
+    public enum Kind {
+        PHASE, THROUGHPUT, PEER_THROUGHPUT, WALLET_SAVE
+    }
+
+    public static final class Event {
+        public final long time;
+        public final Kind kind;
+        @Nullable
+        public final Phase phase;
+        /** phase duration, save pause or sampling interval */
+        public final long durationMs;
+        public final long blocks;
+        public final long bytes;
+        @Nullable
+        public final String peer;
+
+        private Event(final long time, final Kind kind, @Nullable final Phase phase, final long durationMs,
+                final long blocks, final long bytes, @Nullable final String peer) {
+            this.time = time;
+            this.kind = kind;
+            this.phase = phase;
+            this.durationMs = durationMs;
+            this.blocks = blocks;
+            this.bytes = bytes;
+            this.peer = peer;
+        }
+
+        public double blocksPerSecond() {
+            return durationMs > 0 ? blocks * 1000.0 / durationMs : 0;
+        }
+
+        public double bytesPerSecond() {
+            return durationMs > 0 ? bytes * 1000.0 / durationMs : 0;
+        }
+
+        @Override
+        public String toString() {
+            final StringBuilder builder = new StringBuilder();
+            builder.append(String.format(Locale.US, "%tT ", new Date(time)));
+            switch (kind) {
+            case PHASE:
+                builder.append(phase.name().toLowerCase(Locale.US)).append(' ').append(durationMs).append(" ms");
+                if (blocks > 0)
+                    builder.append(String.format(Locale.US, ", %d blocks, %.1f blocks/s", blocks,
+                            blocksPerSecond()));
+                break;
+            case THROUGHPUT:
+            case PEER_THROUGHPUT:
+                if (peer != null)
+                    builder.append(peer).append(' ');
+                builder.append(String.format(Locale.US, "%.1f blocks/s, %.1f kB/s", blocksPerSecond(),
+                        bytesPerSecond() / 1024));
+                break;
+            case WALLET_SAVE:
+                builder.append("wallet save ").append(durationMs).append(" ms");
+                break;
+            }
+            return builder.toString();
+        }
+    }
+
+    private final Event[] ring;
+    private int newest = -1;
+    private int size = 0;
+
+    private final Map<Phase, PhaseProgress> phases = new EnumMap<Phase, PhaseProgress>(Phase.class);
+    private long sampleStart = System.currentTimeMillis();
+    private long sampleBlocks = 0, sampleBytes = 0;
+    private final Map<String, long[]> samplePeers = new HashMap<String, long[]>();
+    private final ThreadLocal<Long> saveStart = new ThreadLocal<Long>();
+
+    public SyncTelemetry(final int capacity) {
+        this.ring = new Event[capacity];
+    }
+
+    public synchronized void phaseStarted(final Phase phase) {
+        if (!phases.containsKey(phase))
+            phases.put(phase, new PhaseProgress(System.currentTimeMillis()));
+    }
+
+    public synchronized boolean isPhaseRunning(final Phase phase) {
+        return phases.containsKey(phase);
+    }
+
+    public synchronized void phaseEnded(final Phase phase) {
+        final PhaseProgress progress = phases.remove(phase);
+        if (progress == null)
+            return;
+        final long now = System.currentTimeMillis();
+        push(new Event(now, Kind.PHASE, phase, now - progress.start, progress.blocks, 0, null));
+    }
+
+    /** Ends all running phases, e.g. because the peer group is being stopped. */
+    public synchronized void phasesEnded() {
+        for (final Phase phase : new ArrayList<Phase>(phases.keySet()))
+            phaseEnded(phase);
+    }
+
+    public synchronized void onBlocksDownloaded(final Peer peer, final Block block,
+            @Nullable final FilteredBlock filteredBlock) {
+        final Phase phase = filteredBlock != null ? Phase.FILTERED_BLOCKS : Phase.HEADERS;
+        phaseEnded(filteredBlock != null ? Phase.HEADERS : Phase.FILTERED_BLOCKS);
+        phaseStarted(phase);
+        phases.get(phase).blocks++;
+
+        final int bytes = filteredBlock != null ? filteredBlock.getMessageSize() : block.getMessageSize();
+        sampleBlocks++;
+        sampleBytes += bytes;
+        final String address = peer.getAddress().toString();
+        long[] counts = samplePeers.get(address);
+        if (counts == null) {
+            counts = new long[2];
+            samplePeers.put(address, counts);
+        }
+        counts[0]++;
+        counts[1] += bytes;
+    }
+
+    /** Records throughput since the previous sample, overall and per peer, if anything was downloaded. */
+    public synchronized void sample() {
+        final long now = System.currentTimeMillis();
+        final long interval = now - sampleStart;
+        if (sampleBlocks > 0) {
+            push(new Event(now, Kind.THROUGHPUT, null, interval, sampleBlocks, sampleBytes, null));
+            for (final Map.Entry<String, long[]> entry : samplePeers.entrySet())
+                push(new Event(now, Kind.PEER_THROUGHPUT, null, interval, entry.getValue()[0], entry.getValue()[1],
+                        entry.getKey()));
+        }
+        sampleStart = now;
+        sampleBlocks = 0;
+        sampleBytes = 0;
+        samplePeers.clear();
+    }
+
+    @Override
+    public void onBeforeAutoSave(final File tempFile) {
+        saveStart.set(System.currentTimeMillis());
+    }
+
+    @Override
+    public void onAfterAutoSave(final File newlySavedFile) {
+        final Long start = saveStart.get();
+        if (start == null)
+            return;
+        saveStart.remove();
+        final long now = System.currentTimeMillis();
+        synchronized (this) {
+            push(new Event(now, Kind.WALLET_SAVE, null, now - start, 0, 0, null));
+        }
+    }
+
+    /** Oldest first. */
+    public synchronized List<Event> getEvents() {
+        final List<Event> events = new ArrayList<Event>(size);
+        for (int i = size - 1; i >= 0; i--)
+            events.add(ring[(newest - i + ring.length) % ring.length]);
+        return events;
+    }
+
+    /** Writes the given events as a compact plain text report, one line per event. */
+    public static void writeReport(final List<Event> events, final Writer writer) throws IOException {
+        final PrintWriter out = new PrintWriter(writer);
+        long totalSaveMs = 0;
+        int saves = 0;
+        for (final Event event : events) {
+            out.println(event);
+            if (event.kind == Kind.WALLET_SAVE) {
+                totalSaveMs += event.durationMs;
+                saves++;
+            }
+        }
+        if (saves > 0)
+            out.println(saves + " wallet saves, " + totalSaveMs + " ms total");
+        out.flush();
+        if (out.checkError())
+            throw new IOException("problem writing sync report");
+    }
+
+    private void push(final Event event) {
+        newest = (newest + 1) % ring.length;
+        ring[newest] = event;
+        if (size < ring.length)
+            size++;
+    }
+
+    private static final class PhaseProgress {
+        private final long start;
+        private long blocks = 0;
+
+        private PhaseProgress(final long start) {
+            this.start = start;
+        }
+    }
+}
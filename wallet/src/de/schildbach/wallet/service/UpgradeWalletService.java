@@ -61,6 +61,7 @@ public final class UpgradeWalletService extends IntentService {
         super.onCreate();
 
         application = (WalletApplication) getApplication();
+        application.ensureNotificationChannels();
 
         if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
             final NotificationCompat.Builder notification = new NotificationCompat.Builder(this,
@@ -19,12 +19,10 @@ package de.schildbach.wallet.ui;
 
 import static com.google.common.base.Preconditions.checkState;
 
-import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.OutputStreamWriter;
-import java.io.Writer;
+import java.io.OutputStream;
 import java.text.DateFormat;
 import java.util.Date;
 import java.util.TimeZone;
@@ -38,7 +36,6 @@ import org.dash.wallet.common.ui.DialogBuilder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import com.google.common.base.Charsets;
 
 import de.schildbach.wallet.Constants;
 import de.schildbach.wallet.WalletApplication;
@@ -236,17 +233,14 @@ public class BackupWalletDialogFragment extends DialogFragment {
 
         final Protos.Wallet walletProto = new WalletProtobufSerializer().walletToProto(wallet);
 
-        Writer cipherOut = null;
+        OutputStream plainOut = null;
 
         try {
-            final ByteArrayOutputStream baos = new ByteArrayOutputStream();
-            walletProto.writeTo(baos);
-            baos.close();
-            final byte[] plainBytes = baos.toByteArray();
-
-            cipherOut = new OutputStreamWriter(new FileOutputStream(file), Charsets.UTF_8);
-            cipherOut.write(Crypto.encrypt(plainBytes, password.toCharArray()));
-            cipherOut.flush();
+            // encrypted and encoded on the way to the file, without a copy of the backup in memory
+            plainOut = Crypto.encryptingStream(new FileOutputStream(file), password.toCharArray());
+            walletProto.writeTo(plainOut);
+            plainOut.close();
+            plainOut = null;
 
             log.info("backed up wallet to: '" + file + "'");
 
@@ -259,9 +253,9 @@ public class BackupWalletDialogFragment extends DialogFragment {
 
             log.error("problem backing up wallet", x);
         } finally {
-            if (cipherOut != null) {
+            if (plainOut != null) {
                 try {
-                    cipherOut.close();
+                    plainOut.close();
                 } catch (final IOException x) {
                     // swallow
                 }
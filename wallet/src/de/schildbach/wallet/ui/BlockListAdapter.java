@@ -19,14 +19,16 @@ package de.schildbach.wallet.ui;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
-import java.util.Set;
+import java.util.Map;
 
 import javax.annotation.Nullable;
 
 import org.bitcoinj.core.Address;
 import org.bitcoinj.core.Block;
 import org.bitcoinj.core.Coin;
+import org.bitcoinj.core.Sha256Hash;
 import org.bitcoinj.core.StoredBlock;
 import org.bitcoinj.core.Transaction;
 import org.bitcoinj.core.Transaction.Purpose;
@@ -36,6 +38,7 @@ import org.dash.wallet.common.ui.CurrencyTextView;
 
 import de.schildbach.wallet.Constants;
 import de.schildbach.wallet.data.AddressBookProvider;
+import de.schildbach.wallet.util.TransactionFacts;
 import de.schildbach.wallet.util.WalletUtils;
 import de.schildbach.wallet_test.R;
 
@@ -63,7 +66,8 @@ public class BlockListAdapter extends RecyclerView.Adapter<BlockListAdapter.Bloc
     private MonetaryFormat format;
 
     private final List<StoredBlock> blocks = new ArrayList<StoredBlock>();
-    private Set<Transaction> transactions;
+    @Nullable
+    private BlockTransactions transactions;
 
     private final String textCoinBase;
     private final String textInternal;
@@ -106,7 +110,7 @@ public class BlockListAdapter extends RecyclerView.Adapter<BlockListAdapter.Bloc
         notifyDataSetChanged();
     }
 
-    public void replaceTransactions(final Set<Transaction> transactions) {
+    public void replaceTransactions(final BlockTransactions transactions) {
         this.transactions = transactions;
 
         notifyDataSetChanged();
@@ -157,20 +161,18 @@ public class BlockListAdapter extends RecyclerView.Adapter<BlockListAdapter.Bloc
         int iTransactionView = 0;
 
         if (transactions != null) {
-            for (final Transaction tx : transactions) {
-                if (tx.getAppearsInHashes().containsKey(header.getHash())) {
-                    final View view;
-                    if (iTransactionView < transactionChildCount) {
-                        view = holder.transactionsViewGroup.getChildAt(iTransactionView);
-                    } else {
-                        view = inflater.inflate(R.layout.block_row_transaction, null);
-                        holder.transactionsViewGroup.addView(view, iTransactionView);
-                    }
-
-                    bindView(view, tx);
-
-                    iTransactionView++;
+            for (final Transaction tx : transactions.get(header.getHash())) {
+                final View view;
+                if (iTransactionView < transactionChildCount) {
+                    view = holder.transactionsViewGroup.getChildAt(iTransactionView);
+                } else {
+                    view = inflater.inflate(R.layout.block_row_transaction, null);
+                    holder.transactionsViewGroup.addView(view, iTransactionView);
                 }
+
+                bindView(view, tx);
+
+                iTransactionView++;
             }
         }
 
@@ -187,9 +189,8 @@ public class BlockListAdapter extends RecyclerView.Adapter<BlockListAdapter.Bloc
             });
         }
 
-        StoredBlock block = wallet.getContext().chainLockHandler.getBestChainLockBlock();
-        final int chainLockHeight = block != null ? block.getHeight() : 0;
-        final int mnListHeight = (int)wallet.getContext().masternodeListManager.getListAtChainTip().getHeight();
+        final int chainLockHeight = transactions != null ? transactions.chainLockHeight : 0;
+        final int mnListHeight = transactions != null ? transactions.mnListHeight : 0;
 
         if(chainLockHeight == storedBlock.getHeight() || mnListHeight == storedBlock.getHeight()) {
             String text = "";
@@ -212,14 +213,11 @@ public class BlockListAdapter extends RecyclerView.Adapter<BlockListAdapter.Bloc
         final boolean isCoinBase = tx.isCoinBase();
         final boolean isInternal = tx.getPurpose() == Purpose.KEY_ROTATION;
 
-        final Coin value = tx.getValue(wallet);
-        final boolean sent = value.signum() < 0;
-        final boolean self = WalletUtils.isEntirelySelf(tx, wallet);
-        final Address address;
-        if (sent)
-            address = WalletUtils.getToAddressOfSent(tx, wallet);
-        else
-            address = WalletUtils.getWalletAddressOfReceived(tx, wallet);
+        final TransactionFacts facts = WalletUtils.getTransactionFacts(tx, wallet);
+        final Coin value = facts.value;
+        final boolean sent = facts.sent;
+        final boolean self = facts.self;
+        final Address address = facts.address;
 
         // receiving or sending
         final TextView rowFromTo = (TextView) row.findViewById(R.id.block_row_transaction_fromto);
@@ -255,6 +253,28 @@ public class BlockListAdapter extends RecyclerView.Adapter<BlockListAdapter.Bloc
         void onBlockMenuClick(View view, StoredBlock block);
     }
 
+    /**
+     * Wallet transactions indexed by the blocks they appear in, plus the chainlock and masternode list heights as of
+     * the time the index was built.
+     */
+    public static class BlockTransactions {
+        private final Map<Sha256Hash, List<Transaction>> transactionsByBlock;
+        private final int chainLockHeight;
+        private final int mnListHeight;
+
+        public BlockTransactions(final Map<Sha256Hash, List<Transaction>> transactionsByBlock,
+                final int chainLockHeight, final int mnListHeight) {
+            this.transactionsByBlock = transactionsByBlock;
+            this.chainLockHeight = chainLockHeight;
+            this.mnListHeight = mnListHeight;
+        }
+
+        public List<Transaction> get(final Sha256Hash blockHash) {
+            final List<Transaction> transactions = transactionsByBlock.get(blockHash);
+            return transactions != null ? transactions : Collections.<Transaction> emptyList();
+        }
+    }
+
     public static class BlockViewHolder extends RecyclerView.ViewHolder {
         private final ViewGroup transactionsViewGroup;
         private final View miningRewardAdjustmentView;
@@ -17,7 +17,8 @@
 
 package de.schildbach.wallet.ui;
 
-import java.util.HashSet;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -26,6 +27,7 @@ import java.util.concurrent.RejectedExecutionException;
 import org.bitcoinj.core.Sha256Hash;
 import org.bitcoinj.core.StoredBlock;
 import org.bitcoinj.core.Transaction;
+import org.bitcoinj.evolution.SimplifiedMasternodeListManager;
 import org.bitcoinj.wallet.Wallet;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -35,6 +37,7 @@ import de.schildbach.wallet.Constants;
 import de.schildbach.wallet.WalletApplication;
 import de.schildbach.wallet.service.BlockchainService;
 import de.schildbach.wallet.service.BlockchainServiceImpl;
+import de.schildbach.wallet.ui.BlockListAdapter.BlockTransactions;
 import de.schildbach.wallet_test.R;
 
 import android.app.Activity;
@@ -267,7 +270,7 @@ public final class BlockListFragment extends Fragment implements BlockListAdapte
 			adapter.replace(blocks);
 			viewGroup.setDisplayedChild(1);
 
-			final Loader<Set<Transaction>> transactionLoader = loaderManager.getLoader(ID_TRANSACTION_LOADER);
+			final Loader<BlockTransactions> transactionLoader = loaderManager.getLoader(ID_TRANSACTION_LOADER);
 			if (transactionLoader != null && transactionLoader.isStarted())
 				transactionLoader.forceLoad();
 		}
@@ -278,7 +281,7 @@ public final class BlockListFragment extends Fragment implements BlockListAdapte
 		}
 	};
 
-    private static class TransactionsLoader extends AsyncTaskLoader<Set<Transaction>> {
+    private static class TransactionsLoader extends AsyncTaskLoader<BlockTransactions> {
 		private final Wallet wallet;
 
         private TransactionsLoader(final Context context, final Wallet wallet) {
@@ -288,37 +291,52 @@ public final class BlockListFragment extends Fragment implements BlockListAdapte
 		}
 
 		@Override
-        public Set<Transaction> loadInBackground() {
+        public BlockTransactions loadInBackground() {
 			org.bitcoinj.core.Context.propagate(Constants.CONTEXT);
 
 			final Set<Transaction> transactions = wallet.getTransactions(true);
 
-			final Set<Transaction> filteredTransactions = new HashSet<Transaction>(transactions.size());
+			final Map<Sha256Hash, List<Transaction>> transactionsByBlock = new HashMap<Sha256Hash, List<Transaction>>();
             for (final Transaction tx : transactions) {
 				final Map<Sha256Hash, Integer> appearsIn = tx.getAppearsInHashes();
-				if (appearsIn != null && !appearsIn.isEmpty()) // TODO filter by updateTime
-					filteredTransactions.add(tx);
+				if (appearsIn == null)
+					continue;
+				for (final Sha256Hash blockHash : appearsIn.keySet()) {
+					List<Transaction> blockTransactions = transactionsByBlock.get(blockHash);
+					if (blockTransactions == null) {
+						blockTransactions = new ArrayList<Transaction>(1);
+						transactionsByBlock.put(blockHash, blockTransactions);
+					}
+					blockTransactions.add(tx);
+				}
 			}
 
-			return filteredTransactions;
+			final org.bitcoinj.core.Context context = wallet.getContext();
+			final StoredBlock chainLockBlock = context.chainLockHandler.getBestChainLockBlock();
+			final int chainLockHeight = chainLockBlock != null ? chainLockBlock.getHeight() : 0;
+			final SimplifiedMasternodeListManager masternodeListManager = context.masternodeListManager;
+			final int mnListHeight = masternodeListManager != null
+					? (int) masternodeListManager.getListAtChainTip().getHeight() : 0;
+
+			return new BlockTransactions(transactionsByBlock, chainLockHeight, mnListHeight);
 		}
 	}
 
-    private final LoaderManager.LoaderCallbacks<Set<Transaction>> transactionLoaderCallbacks = new LoaderManager.LoaderCallbacks<Set<Transaction>>() {
+    private final LoaderManager.LoaderCallbacks<BlockTransactions> transactionLoaderCallbacks = new LoaderManager.LoaderCallbacks<BlockTransactions>() {
 
 		@NonNull
 		@Override
-		public android.support.v4.content.Loader<Set<Transaction>> onCreateLoader(int id, @Nullable Bundle args) {
+		public android.support.v4.content.Loader<BlockTransactions> onCreateLoader(int id, @Nullable Bundle args) {
 			return new TransactionsLoader(activity, wallet);
 		}
 
 		@Override
-		public void onLoadFinished(@NonNull android.support.v4.content.Loader<Set<Transaction>> loader, Set<Transaction> transactions) {
+		public void onLoadFinished(@NonNull android.support.v4.content.Loader<BlockTransactions> loader, BlockTransactions transactions) {
 			adapter.replaceTransactions(transactions);
 		}
 
 		@Override
-		public void onLoaderReset(@NonNull android.support.v4.content.Loader<Set<Transaction>> loader) {
+		public void onLoaderReset(@NonNull android.support.v4.content.Loader<BlockTransactions> loader) {
 			adapter.clearTransactions();
 		}
 	};
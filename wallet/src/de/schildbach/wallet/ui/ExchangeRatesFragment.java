@@ -239,7 +239,7 @@ public final class ExchangeRatesFragment extends Fragment implements OnSharedPre
     }
 
     private void updateView(List<de.schildbach.wallet.rates.ExchangeRate> exchangeRates) {
-        adapter.setExchangeRates(exchangeRates);
+        final boolean sameCurrencies = adapter.setExchangeRates(exchangeRates);
 
         if (adapter.getItemCount() == 0 && query == null) {
             showOnly(loadingErrorView);
@@ -255,7 +255,7 @@ public final class ExchangeRatesFragment extends Fragment implements OnSharedPre
         }
 
         final int positionToScrollTo = adapter.getDefaultCurrencyPosition();
-        if (positionToScrollTo != RecyclerView.NO_POSITION) {
+        if (!sameCurrencies && positionToScrollTo != RecyclerView.NO_POSITION) {
             recyclerView.scrollToPosition(positionToScrollTo);
         }
     }
@@ -304,6 +304,7 @@ public final class ExchangeRatesFragment extends Fragment implements OnSharedPre
         private Coin balance = null;
         @Nullable
         private BlockchainState blockchainState = null;
+        private int defaultCurrencyPosition = RecyclerView.NO_POSITION;
 
         private ExchangeRatesAdapter() {
             setHasStableIds(true);
@@ -311,6 +312,7 @@ public final class ExchangeRatesFragment extends Fragment implements OnSharedPre
 
         public void setDefaultCurrency(final String defaultCurrency) {
             this.defaultCurrency = defaultCurrency;
+            this.defaultCurrencyPosition = findDefaultCurrencyPosition();
             notifyDataSetChanged();
         }
 
@@ -330,6 +332,10 @@ public final class ExchangeRatesFragment extends Fragment implements OnSharedPre
         }
 
         public int getDefaultCurrencyPosition() {
+            return defaultCurrencyPosition;
+        }
+
+        private int findDefaultCurrencyPosition() {
             if (exchangeRates == null || defaultCurrency == null) {
                 return RecyclerView.NO_POSITION;
             }
@@ -418,9 +424,32 @@ public final class ExchangeRatesFragment extends Fragment implements OnSharedPre
             });
         }
 
-        public void setExchangeRates(List<de.schildbach.wallet.rates.ExchangeRate> exchangeRates) {
+        /**
+         * @return true if only rates changed but not the list of currencies, in which case only the affected rows are
+         *         rebound
+         */
+        public boolean setExchangeRates(List<de.schildbach.wallet.rates.ExchangeRate> exchangeRates) {
+            final List<de.schildbach.wallet.rates.ExchangeRate> oldRates = this.exchangeRates;
             this.exchangeRates = exchangeRates;
-            notifyDataSetChanged();
+
+            if (oldRates == null || exchangeRates == null || oldRates.size() != exchangeRates.size()) {
+                defaultCurrencyPosition = findDefaultCurrencyPosition();
+                notifyDataSetChanged();
+                return false;
+            }
+            for (int i = 0; i < exchangeRates.size(); i++) {
+                if (!oldRates.get(i).getCurrencyCode().equals(exchangeRates.get(i).getCurrencyCode())) {
+                    defaultCurrencyPosition = findDefaultCurrencyPosition();
+                    notifyDataSetChanged();
+                    return false;
+                }
+            }
+            for (int i = 0; i < exchangeRates.size(); i++) {
+                if (oldRates.get(i).getValue() != exchangeRates.get(i).getValue()) {
+                    notifyItemChanged(i);
+                }
+            }
+            return true;
         }
     }
 
@@ -37,6 +37,7 @@ import android.widget.TextView;
 public final class NetworkMonitorActivity extends AbstractBindServiceActivity {
     private PeerListFragment peerListFragment;
     private BlockListFragment blockListFragment;
+    private SyncTelemetryFragment syncTelemetryFragment;
 
     @Override
     protected void onCreate(final Bundle savedInstanceState) {
@@ -53,7 +54,8 @@ public final class NetworkMonitorActivity extends AbstractBindServiceActivity {
 
             String peersTitle = getString(R.string.network_monitor_peer_list_title);
             String blocksTitle = getString(R.string.network_monitor_block_list_title);
-            final PagerAdapter pagerAdapter = new PagerAdapter(fm, peersTitle, blocksTitle);
+            String syncTitle = getString(R.string.network_monitor_sync_telemetry_title);
+            final PagerAdapter pagerAdapter = new PagerAdapter(fm, peersTitle, blocksTitle, syncTitle);
 
             pager.setAdapter(pagerAdapter);
             pager.setPageMargin(2);
@@ -67,9 +69,11 @@ public final class NetworkMonitorActivity extends AbstractBindServiceActivity {
 
             peerListFragment = new PeerListFragment();
             blockListFragment = new BlockListFragment();
+            syncTelemetryFragment = new SyncTelemetryFragment();
         } else {
             peerListFragment = (PeerListFragment) fm.findFragmentById(R.id.peer_list_fragment);
             blockListFragment = (BlockListFragment) fm.findFragmentById(R.id.block_list_fragment);
+            syncTelemetryFragment = (SyncTelemetryFragment) fm.findFragmentById(R.id.sync_telemetry_fragment);
         }
     }
 
@@ -88,24 +92,28 @@ public final class NetworkMonitorActivity extends AbstractBindServiceActivity {
 
         private final String peersTitle;
         private final String blocksTitle;
+        private final String syncTitle;
 
-        public PagerAdapter(final FragmentManager fm, String peersTitle, String blocksTitle) {
+        public PagerAdapter(final FragmentManager fm, String peersTitle, String blocksTitle, String syncTitle) {
             super(fm);
             this.peersTitle = peersTitle;
             this.blocksTitle = blocksTitle;
+            this.syncTitle = syncTitle;
         }
 
         @Override
         public int getCount() {
-            return 2;
+            return 3;
         }
 
         @Override
         public Fragment getItem(final int position) {
             if (position == 0)
                 return peerListFragment;
-            else
+            else if (position == 1)
                 return blockListFragment;
+            else
+                return syncTelemetryFragment;
         }
 
         @Nullable
@@ -114,6 +122,7 @@ public final class NetworkMonitorActivity extends AbstractBindServiceActivity {
             switch (position) {
                 case 0: return peersTitle;
                 case 1: return blocksTitle;
+                case 2: return syncTitle;
             }
             return super.getPageTitle(position);
         }
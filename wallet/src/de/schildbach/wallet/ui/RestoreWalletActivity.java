@@ -17,19 +17,16 @@
 
 package de.schildbach.wallet.ui;
 
-import java.io.BufferedReader;
-import java.io.ByteArrayInputStream;
+import java.io.BufferedInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
 
 import org.bitcoinj.crypto.ChildNumber;
 import org.bitcoinj.wallet.Wallet;
 import org.bitcoinj.wallet.Wallet.BalanceType;
 import org.dash.wallet.common.ui.DialogBuilder;
 
-import com.google.common.base.Charsets;
 import com.google.common.collect.ImmutableList;
 
 import org.dash.wallet.common.Configuration;
@@ -38,7 +35,6 @@ import de.schildbach.wallet.WalletApplication;
 import de.schildbach.wallet.ui.widget.UpgradeWalletDisclaimerDialog;
 import de.schildbach.wallet.util.Crypto;
 import de.schildbach.wallet.util.FingerprintHelper;
-import de.schildbach.wallet.util.Io;
 import de.schildbach.wallet.util.WalletUtils;
 import de.schildbach.wallet_test.R;
 
@@ -172,13 +168,8 @@ public final class RestoreWalletActivity extends AbstractWalletActivity
 
     private void restoreWalletFromEncrypted(final InputStream cipher, final String password) {
         try {
-            final BufferedReader cipherIn = new BufferedReader(new InputStreamReader(cipher, Charsets.UTF_8));
-            final StringBuilder cipherText = new StringBuilder();
-            Io.copy(cipherIn, cipherText, Constants.BACKUP_MAX_CHARS);
-            cipherIn.close();
-
-            final byte[] plainText = Crypto.decryptBytes(cipherText.toString(), password.toCharArray());
-            final InputStream is = new ByteArrayInputStream(plainText);
+            // decoded and decrypted while the wallet is read, without a copy of the backup in memory
+            final InputStream is = new BufferedInputStream(Crypto.decryptingStream(cipher, password.toCharArray()));
 
             restoreWallet(WalletUtils.restoreWalletFromProtobufOrBase58(is, Constants.NETWORK_PARAMETERS));
 
@@ -196,6 +187,12 @@ public final class RestoreWalletActivity extends AbstractWalletActivity
             dialog.show();
 
             log.info("problem restoring wallet", x);
+        } finally {
+            try {
+                cipher.close();
+            } catch (final IOException x2) {
+                // swallow
+            }
         }
     }
 
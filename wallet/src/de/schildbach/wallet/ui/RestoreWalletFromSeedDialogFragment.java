@@ -84,6 +84,7 @@ public class RestoreWalletFromSeedDialogFragment extends DialogFragment {
         this.activity = (WalletActivity) activity;
         WalletApplication application = (WalletApplication) activity.getApplication();
         this.wallet = application.getWallet();
+        application.ensureMnemonicCode();
     }
 
     @Override
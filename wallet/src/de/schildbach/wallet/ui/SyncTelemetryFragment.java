@@ -0,0 +1,219 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.schildbach.wallet.ui;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Charsets;
+
+import de.schildbach.wallet.service.BlockchainService;
+import de.schildbach.wallet.service.BlockchainServiceImpl;
+import de.schildbach.wallet.service.SyncTelemetry;
+import de.schildbach.wallet_test.R;
+
+import android.app.Activity;
+import android.content.ComponentName;
+import android.content.Context;
+import android.content.Intent;
+import android.content.ServiceConnection;
+import android.os.Bundle;
+import android.os.Handler;
+import android.os.IBinder;
+import android.support.v4.app.Fragment;
+import android.support.v4.app.ShareCompat;
+import android.support.v4.content.FileProvider;
+import android.text.format.DateUtils;
+import android.view.LayoutInflater;
+import android.view.Menu;
+import android.view.MenuInflater;
+import android.view.MenuItem;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.TextView;
+
+/**
+ * Shows the sync telemetry recorded by the blockchain service and lets it be exported as a report.
+ */
+public final class SyncTelemetryFragment extends Fragment {
+    private AbstractWalletActivity activity;
+
+    private BlockchainService service;
+
+    private TextView reportView;
+
+    private final Handler handler = new Handler();
+
+    private static final long REFRESH_MS = 5 * DateUtils.SECOND_IN_MILLIS;
+
+    private static final Logger log = LoggerFactory.getLogger(SyncTelemetryFragment.class);
+
+    @Override
+    public void onAttach(final Activity activity) {
+        super.onAttach(activity);
+
+        this.activity = (AbstractWalletActivity) activity;
+    }
+
+    @Override
+    public void onCreate(final Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+
+        setHasOptionsMenu(true);
+    }
+
+    @Override
+    public void onActivityCreated(final Bundle savedInstanceState) {
+        super.onActivityCreated(savedInstanceState);
+
+        activity.bindService(new Intent(activity, BlockchainServiceImpl.class), serviceConnection,
+                Context.BIND_AUTO_CREATE);
+    }
+
+    @Override
+    public View onCreateView(final LayoutInflater inflater, final ViewGroup container,
+            final Bundle savedInstanceState) {
+        final View view = inflater.inflate(R.layout.sync_telemetry_fragment, container, false);
+
+        reportView = (TextView) view.findViewById(R.id.sync_telemetry_report);
+
+        return view;
+    }
+
+    @Override
+    public void onResume() {
+        super.onResume();
+
+        handler.post(new Runnable() {
+            @Override
+            public void run() {
+                updateView();
+
+                handler.postDelayed(this, REFRESH_MS);
+            }
+        });
+    }
+
+    @Override
+    public void onPause() {
+        handler.removeCallbacksAndMessages(null);
+
+        super.onPause();
+    }
+
+    @Override
+    public void onDestroy() {
+        activity.unbindService(serviceConnection);
+
+        super.onDestroy();
+    }
+
+    @Override
+    public void onCreateOptionsMenu(final Menu menu, final MenuInflater inflater) {
+        inflater.inflate(R.menu.sync_telemetry_fragment_options, menu);
+
+        super.onCreateOptionsMenu(menu, inflater);
+    }
+
+    @Override
+    public boolean onOptionsItemSelected(final MenuItem item) {
+        switch (item.getItemId()) {
+        case R.id.sync_telemetry_options_export:
+            handleExport();
+            return true;
+        }
+
+        return super.onOptionsItemSelected(item);
+    }
+
+    private void updateView() {
+        if (service == null || reportView == null)
+            return;
+
+        final List<SyncTelemetry.Event> events = service.getSyncTelemetry();
+        if (events.isEmpty()) {
+            reportView.setText(R.string.sync_telemetry_empty);
+            return;
+        }
+
+        final StringWriter report = new StringWriter();
+        try {
+            SyncTelemetry.writeReport(events, report);
+        } catch (final IOException x) {
+            throw new RuntimeException(x); // cannot happen with a StringWriter
+        }
+        reportView.setText(report.toString());
+    }
+
+    private void handleExport() {
+        if (service == null)
+            return;
+
+        final File reportDir = new File(activity.getCacheDir(), "report");
+        reportDir.mkdir();
+        final File reportFile = new File(reportDir, "sync-report.txt");
+
+        Writer writer = null;
+        try {
+            writer = new OutputStreamWriter(new FileOutputStream(reportFile), Charsets.UTF_8);
+            SyncTelemetry.writeReport(service.getSyncTelemetry(), writer);
+        } catch (final IOException x) {
+            log.info("problem writing sync report", x);
+            return;
+        } finally {
+            if (writer != null) {
+                try {
+                    writer.close();
+                } catch (final IOException x) {
+                    // swallow
+                }
+            }
+        }
+
+        final ShareCompat.IntentBuilder builder = ShareCompat.IntentBuilder.from(activity);
+        builder.setSubject(getString(R.string.sync_telemetry_export_report_subject));
+        builder.setType("text/plain");
+        builder.setStream(
+                FileProvider.getUriForFile(activity, activity.getPackageName() + ".file_attachment", reportFile));
+        builder.setChooserTitle(R.string.sync_telemetry_export_report);
+        builder.startChooser();
+        log.info("invoked chooser for exporting sync report");
+    }
+
+    private final ServiceConnection serviceConnection = new ServiceConnection() {
+        @Override
+        public void onServiceConnected(final ComponentName name, final IBinder binder) {
+            service = ((BlockchainServiceImpl.LocalBinder) binder).getService();
+
+            updateView();
+        }
+
+        @Override
+        public void onServiceDisconnected(final ComponentName name) {
+            service = null;
+        }
+    };
+}
@@ -19,6 +19,7 @@ package de.schildbach.wallet.ui;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
@@ -42,11 +43,13 @@ import org.dash.wallet.common.ui.CurrencyTextView;
 import org.dash.wallet.common.ui.DialogBuilder;
 import org.dash.wallet.common.ui.Formats;
 
+import com.google.common.base.Objects;
+
 import de.schildbach.wallet.Constants;
 import de.schildbach.wallet.WalletApplication;
 import de.schildbach.wallet.data.AddressBookProvider;
 import de.schildbach.wallet.util.CircularProgressView;
-
+import de.schildbach.wallet.util.TransactionFacts;
 import de.schildbach.wallet.util.WalletUtils;
 import de.schildbach.wallet_test.R;
 
@@ -54,7 +57,12 @@ import android.content.Context;
 import android.content.res.Resources;
 import android.graphics.Color;
 import android.graphics.Typeface;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Process;
 import android.support.v4.content.res.ResourcesCompat;
+import android.support.v7.util.DiffUtil;
+import android.support.v7.util.ListUpdateCallback;
 import android.support.v7.widget.CardView;
 import android.support.v7.widget.RecyclerView;
 import android.text.Html;
@@ -86,6 +94,9 @@ public class TransactionsAdapter extends RecyclerView.Adapter<RecyclerView.ViewH
     private final OnClickListener onClickListener;
 
     private final List<Transaction> transactions = new ArrayList<Transaction>();
+    private List<TransactionState> transactionStates = Collections.emptyList();
+    private List<Transaction> latestTransactions = transactions;
+    private int replaceGeneration = 0;
     private MonetaryFormat format;
     private Warning warning = null;
 
@@ -109,6 +120,9 @@ public class TransactionsAdapter extends RecyclerView.Adapter<RecyclerView.ViewH
 
     private Map<Sha256Hash, TransactionCacheEntry> transactionCache = new HashMap<Sha256Hash, TransactionCacheEntry>();
 
+    private final Handler handler = new Handler();
+    private static Handler backgroundHandler;
+
     private static class TransactionCacheEntry {
         private final Coin value;
         private final boolean sent;
@@ -132,6 +146,78 @@ public class TransactionsAdapter extends RecyclerView.Adapter<RecyclerView.ViewH
             this.isIX = isIX;
             this.isLocked = isLocked;
         }
+
+        private TransactionCacheEntry withAddressLabel(final @Nullable String addressLabel) {
+            return new TransactionCacheEntry(value, sent, self, showFee, address, addressLabel, isIX, isLocked);
+        }
+    }
+
+    /** Snapshot of everything a row displays that can change while the transaction stays in the list. */
+    private static class TransactionState {
+        private final Sha256Hash hash;
+        private final ConfidenceType confidenceType;
+        private final int depth;
+        private final int broadcastPeers;
+        private final boolean isLocked;
+        private final long updateTime;
+        private final boolean hasExchangeRate;
+
+        private TransactionState(final Transaction tx) {
+            final TransactionConfidence confidence = tx.getConfidence();
+            final Date updateTime = tx.getUpdateTime();
+
+            this.hash = tx.getHash();
+            this.confidenceType = confidence.getConfidenceType();
+            this.depth = confidenceType == ConfidenceType.BUILDING ? confidence.getDepthInBlocks() : 0;
+            this.broadcastPeers = confidence.numBroadcastPeers();
+            this.isLocked = confidence.isTransactionLocked();
+            this.updateTime = updateTime != null ? updateTime.getTime() : 0;
+            this.hasExchangeRate = tx.getExchangeRate() != null;
+        }
+
+        private boolean isDisplayedTheSame(final TransactionState other) {
+            return confidenceType == other.confidenceType && depth == other.depth
+                    && broadcastPeers == other.broadcastPeers && isLocked == other.isLocked
+                    && updateTime == other.updateTime && hasExchangeRate == other.hasExchangeRate;
+        }
+
+        private static List<TransactionState> of(final List<Transaction> transactions) {
+            final List<TransactionState> states = new ArrayList<TransactionState>(transactions.size());
+            for (final Transaction tx : transactions)
+                states.add(new TransactionState(tx));
+            return states;
+        }
+    }
+
+    private static class TransactionDiffCallback extends DiffUtil.Callback {
+        private final List<TransactionState> oldStates;
+        private final List<TransactionState> newStates;
+
+        private TransactionDiffCallback(final List<TransactionState> oldStates,
+                final List<TransactionState> newStates) {
+            this.oldStates = oldStates;
+            this.newStates = newStates;
+        }
+
+        @Override
+        public int getOldListSize() {
+            return oldStates.size();
+        }
+
+        @Override
+        public int getNewListSize() {
+            return newStates.size();
+        }
+
+        @Override
+        public boolean areItemsTheSame(final int oldItemPosition, final int newItemPosition) {
+            return oldStates.get(oldItemPosition).hash.equals(newStates.get(newItemPosition).hash);
+        }
+
+        @Override
+        public boolean areContentsTheSame(final int oldItemPosition, final int newItemPosition) {
+            return oldStates.get(oldItemPosition).isDisplayedTheSame(newStates.get(newItemPosition));
+        }
     }
 
     public TransactionsAdapter(final Context context, final Wallet wallet,
@@ -173,23 +259,73 @@ public class TransactionsAdapter extends RecyclerView.Adapter<RecyclerView.ViewH
     }
 
     public void clear() {
+        replaceGeneration++;
         transactions.clear();
+        transactionStates = Collections.emptyList();
+        latestTransactions = transactions;
 
         notifyDataSetChanged();
     }
 
     public void replace(final Transaction tx) {
+        replaceGeneration++;
         transactions.clear();
         transactions.add(tx);
+        transactionStates = TransactionState.of(transactions);
+        latestTransactions = transactions;
 
         notifyDataSetChanged();
     }
 
     public void replace(final Collection<Transaction> transactions) {
-        this.transactions.clear();
-        this.transactions.addAll(transactions);
+        replace(transactions, null);
+    }
 
-        notifyDataSetChanged();
+    /**
+     * Diffs the given transactions against the current ones on a background thread, then dispatches only the
+     * item-level inserts, removes, moves and changes. A later call supersedes a diff that is still running.
+     *
+     * @param onReplaced
+     *            called back on the UI thread once the new transactions are in place
+     */
+    public void replace(final Collection<Transaction> transactions, @Nullable final Runnable onReplaced) {
+        final List<Transaction> newTransactions = new ArrayList<Transaction>(transactions);
+        final List<TransactionState> oldStates = transactionStates;
+        final int generation = ++replaceGeneration;
+        latestTransactions = newTransactions;
+
+        getBackgroundHandler().post(new Runnable() {
+            @Override
+            public void run() {
+                org.bitcoinj.core.Context.propagate(Constants.CONTEXT);
+
+                final List<TransactionState> newStates = TransactionState.of(newTransactions);
+                final DiffUtil.DiffResult diff = DiffUtil
+                        .calculateDiff(new TransactionDiffCallback(oldStates, newStates), true);
+
+                handler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (generation != replaceGeneration)
+                            return; // superseded
+
+                        TransactionsAdapter.this.transactions.clear();
+                        TransactionsAdapter.this.transactions.addAll(newTransactions);
+                        transactionStates = newStates;
+                        latestTransactions = TransactionsAdapter.this.transactions;
+                        diff.dispatchUpdatesTo(listUpdateCallback);
+
+                        if (onReplaced != null)
+                            onReplaced.run();
+                    }
+                });
+            }
+        });
+    }
+
+    /** Re-diffs the current transactions, so that rows whose confidence or time changed get rebound. */
+    public void refresh() {
+        replace(latestTransactions, null);
     }
 
     public void setSelectedItemId(final long itemId) {
@@ -198,10 +334,86 @@ public class TransactionsAdapter extends RecyclerView.Adapter<RecyclerView.ViewH
         notifyDataSetChanged();
     }
 
-    public void clearCacheAndNotifyDataSetChanged() {
-        transactionCache.clear();
+    /**
+     * Re-resolves the labels of all cached addresses on a background thread and rebinds only the rows whose label
+     * actually changed.
+     */
+    public void refreshAddressLabels() {
+        final Map<Sha256Hash, TransactionCacheEntry> cacheSnapshot = new HashMap<Sha256Hash, TransactionCacheEntry>(
+                transactionCache);
+
+        getBackgroundHandler().post(new Runnable() {
+            @Override
+            public void run() {
+                final List<String> addresses = new ArrayList<String>(cacheSnapshot.size());
+                for (final TransactionCacheEntry entry : cacheSnapshot.values())
+                    if (entry.address != null)
+                        addresses.add(entry.address.toBase58());
+                final Map<String, String> labels = AddressBookProvider.resolveLabels(context, addresses);
+
+                final Map<Sha256Hash, String> changedLabels = new HashMap<Sha256Hash, String>();
+                for (final Map.Entry<Sha256Hash, TransactionCacheEntry> entry : cacheSnapshot.entrySet()) {
+                    final Address address = entry.getValue().address;
+                    if (address == null)
+                        continue;
+                    final String label = labels.get(address.toBase58());
+                    if (!Objects.equal(label, entry.getValue().addressLabel))
+                        changedLabels.put(entry.getKey(), label);
+                }
+
+                if (changedLabels.isEmpty())
+                    return;
 
-        notifyDataSetChanged();
+                handler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        for (final Map.Entry<Sha256Hash, String> entry : changedLabels.entrySet()) {
+                            final TransactionCacheEntry cacheEntry = transactionCache.get(entry.getKey());
+                            if (cacheEntry != null)
+                                transactionCache.put(entry.getKey(), cacheEntry.withAddressLabel(entry.getValue()));
+                        }
+
+                        final int offset = warning != null ? 1 : 0;
+                        for (int i = 0; i < transactions.size(); i++)
+                            if (changedLabels.containsKey(transactions.get(i).getHash()))
+                                notifyItemChanged(i + offset);
+                    }
+                });
+            }
+        });
+    }
+
+    private final ListUpdateCallback listUpdateCallback = new ListUpdateCallback() {
+        @Override
+        public void onInserted(final int position, final int count) {
+            notifyItemRangeInserted(position + (warning != null ? 1 : 0), count);
+        }
+
+        @Override
+        public void onRemoved(final int position, final int count) {
+            notifyItemRangeRemoved(position + (warning != null ? 1 : 0), count);
+        }
+
+        @Override
+        public void onMoved(final int fromPosition, final int toPosition) {
+            final int offset = warning != null ? 1 : 0;
+            notifyItemMoved(fromPosition + offset, toPosition + offset);
+        }
+
+        @Override
+        public void onChanged(final int position, final int count, final Object payload) {
+            notifyItemRangeChanged(position + (warning != null ? 1 : 0), count, payload);
+        }
+    };
+
+    private static synchronized Handler getBackgroundHandler() {
+        if (backgroundHandler == null) {
+            final HandlerThread backgroundThread = new HandlerThread("transactionsDiffThread",
+                    Process.THREAD_PRIORITY_BACKGROUND);
+            backgroundThread.start();
+            backgroundHandler = new Handler(backgroundThread.getLooper());
+        }
+        return backgroundHandler;
     }
 
     @Override
@@ -359,15 +571,12 @@ public class TransactionsAdapter extends RecyclerView.Adapter<RecyclerView.ViewH
 
             TransactionCacheEntry txCache = transactionCache.get(tx.getHash());
             if (txCache == null) {
-                final Coin value = tx.getValue(wallet);
-                final boolean sent = value.signum() < 0;
-                final boolean self = WalletUtils.isEntirelySelf(tx, wallet);
+                final TransactionFacts facts = WalletUtils.getTransactionFacts(tx, wallet);
+                final Coin value = facts.value;
+                final boolean sent = facts.sent;
+                final boolean self = facts.self;
                 final boolean showFee = sent && fee != null && !fee.isZero();
-                final Address address;
-                if (sent)
-                    address = WalletUtils.getToAddressOfSent(tx, wallet);
-                else
-                    address = WalletUtils.getWalletAddressOfReceived(tx, wallet);
+                final Address address = facts.address;
                 final String addressLabel = address != null
                         ? AddressBookProvider.resolveLabel(context, address.toBase58()) : null;
 
@@ -583,7 +792,7 @@ public class TransactionsAdapter extends RecyclerView.Adapter<RecyclerView.ViewH
                 extendMessageView.setVisibility(View.VISIBLE);
                 messageView.setText(R.string.transaction_row_message_received_dead);
                 messageView.setTextColor(colorError);
-            } else if (!txCache.sent && WalletUtils.isPayToManyTransaction(tx)) {
+            } else if (!txCache.sent && WalletUtils.getTransactionFacts(tx, wallet).payToMany) {
                 extendMessageView.setVisibility(View.VISIBLE);
                 messageView.setText(R.string.transaction_row_message_received_pay_to_many);
                 messageView.setTextColor(colorInsignificant);
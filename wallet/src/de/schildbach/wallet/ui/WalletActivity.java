@@ -63,9 +63,8 @@ import android.widget.EditText;
 import android.widget.Spinner;
 import android.widget.TextView;
 
-import com.google.common.base.Charsets;
 import com.google.common.collect.ImmutableList;
-import com.squareup.okhttp.HttpUrl;
+import okhttp3.HttpUrl;
 
 import org.bitcoinj.core.InstantSend;
 import org.bitcoinj.core.Sha256Hash;
@@ -81,13 +80,11 @@ import org.dash.wallet.integration.uphold.data.UpholdClient;
 import org.dash.wallet.integration.uphold.ui.UpholdAccountActivity;
 import org.dash.wallet.integration.uphold.ui.UpholdSplashActivity;
 
-import java.io.BufferedReader;
-import java.io.ByteArrayInputStream;
+import java.io.BufferedInputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.Currency;
@@ -109,7 +106,6 @@ import de.schildbach.wallet.ui.widget.UpgradeWalletDisclaimerDialog;
 import de.schildbach.wallet.util.CrashReporter;
 import de.schildbach.wallet.util.Crypto;
 import de.schildbach.wallet.util.FingerprintHelper;
-import de.schildbach.wallet.util.Io;
 import de.schildbach.wallet.util.Nfc;
 import de.schildbach.wallet.util.WalletUtils;
 import de.schildbach.wallet_test.R;
@@ -1014,15 +1010,10 @@ public final class WalletActivity extends AbstractBindServiceActivity
     }
 
     private void restoreWalletFromEncrypted(final File file, final String password) {
+        FileInputStream cipherIn = null;
         try {
-            final BufferedReader cipherIn = new BufferedReader(
-                    new InputStreamReader(new FileInputStream(file), Charsets.UTF_8));
-            final StringBuilder cipherText = new StringBuilder();
-            Io.copy(cipherIn, cipherText, Constants.BACKUP_MAX_CHARS);
-            cipherIn.close();
-
-            final byte[] plainText = Crypto.decryptBytes(cipherText.toString(), password.toCharArray());
-            final InputStream is = new ByteArrayInputStream(plainText);
+            cipherIn = new FileInputStream(file);
+            final InputStream is = new BufferedInputStream(Crypto.decryptingStream(cipherIn, password.toCharArray()));
 
             restoreWallet(WalletUtils.restoreWalletFromProtobufOrBase58(is, Constants.NETWORK_PARAMETERS));
 
@@ -1040,6 +1031,14 @@ public final class WalletActivity extends AbstractBindServiceActivity
             dialog.show();
 
             log.info("problem restoring wallet: " + file, x);
+        } finally {
+            if (cipherIn != null) {
+                try {
+                    cipherIn.close();
+                } catch (final IOException x2) {
+                    // swallow
+                }
+            }
         }
     }
 
@@ -18,12 +18,7 @@
 package de.schildbach.wallet.ui;
 
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.Comparator;
-import java.util.Date;
 import java.util.List;
-import java.util.Set;
 import java.util.concurrent.RejectedExecutionException;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -35,7 +30,6 @@ import org.bitcoinj.core.CoinDefinition;
 import org.bitcoinj.core.ScriptException;
 import org.bitcoinj.core.Transaction;
 import org.bitcoinj.core.Transaction.Purpose;
-import org.bitcoinj.core.TransactionConfidence.ConfidenceType;
 import org.bitcoinj.utils.Threading;
 import org.bitcoinj.wallet.Wallet;
 import org.dash.wallet.common.Configuration;
@@ -46,6 +40,7 @@ import org.slf4j.LoggerFactory;
 import de.schildbach.wallet.Constants;
 import de.schildbach.wallet.WalletApplication;
 import de.schildbach.wallet.data.AddressBookProvider;
+import de.schildbach.wallet.data.TransactionHistory;
 import de.schildbach.wallet.data.WalletLock;
 import de.schildbach.wallet.ui.TransactionsAdapter.Warning;
 import de.schildbach.wallet.util.BitmapFragment;
@@ -156,7 +151,7 @@ public class WalletTransactionsFragment extends Fragment implements LoaderManage
     private final ContentObserver addressBookObserver = new ContentObserver(handler) {
         @Override
         public void onChange(final boolean selfChange) {
-            adapter.clearCacheAndNotifyDataSetChanged();
+            adapter.refreshAddressLabels();
         }
     };
 
@@ -350,9 +345,7 @@ public class WalletTransactionsFragment extends Fragment implements LoaderManage
 
     @Override
     public void onTransactionMenuClick(final View view, final Transaction tx) {
-        final boolean txSent = tx.getValue(wallet).signum() < 0;
-        final Address txAddress = txSent ? WalletUtils.getToAddressOfSent(tx, wallet)
-                : WalletUtils.getWalletAddressOfReceived(tx, wallet);
+        final Address txAddress = WalletUtils.getTransactionFacts(tx, wallet).address;
         final byte[] txSerialized = tx.unsafeBitcoinSerialize();
         final boolean txRotation = tx.getPurpose() == Purpose.KEY_ROTATION;
 
@@ -490,8 +483,12 @@ public class WalletTransactionsFragment extends Fragment implements LoaderManage
         final Direction direction = ((TransactionsLoader) loader).getDirection();
 
         loading.setVisibility(View.GONE);
-        adapter.replace(transactions);
-        updateView();
+        adapter.replace(transactions, new Runnable() {
+            @Override
+            public void run() {
+                updateView();
+            }
+        });
 
         if (WalletLock.getInstance().isWalletLocked(wallet)) {
             showLockedView();
@@ -577,20 +574,25 @@ public class WalletTransactionsFragment extends Fragment implements LoaderManage
             THROTTLE_MS) {
         @Override
         public void onThrottledWalletChanged() {
-            adapter.notifyDataSetChanged();
+            adapter.refresh();
         }
     };
 
     private static class TransactionsLoader extends AsyncTaskLoader<List<Transaction>> {
 
         private LocalBroadcastManager broadcastManager;
+        private final WalletApplication application;
         private final Wallet wallet;
         @Nullable
         private final Direction direction;
+        @Nullable
+        private List<Transaction> lastDelivered;
+
         private TransactionsLoader(final Context context, final Wallet wallet, @Nullable final Direction direction) {
             super(context);
 
             this.broadcastManager = LocalBroadcastManager.getInstance(context.getApplicationContext());
+            this.application = (WalletApplication) context.getApplicationContext();
             this.wallet = wallet;
             this.direction = direction;
         }
@@ -606,6 +608,7 @@ public class WalletTransactionsFragment extends Fragment implements LoaderManage
             wallet.addCoinsReceivedEventListener(Threading.SAME_THREAD, transactionAddRemoveListener);
             wallet.addCoinsSentEventListener(Threading.SAME_THREAD, transactionAddRemoveListener);
             wallet.addChangeEventListener(Threading.SAME_THREAD, transactionAddRemoveListener);
+            wallet.addTransactionConfidenceEventListener(Threading.SAME_THREAD, transactionAddRemoveListener);
             broadcastManager.registerReceiver(walletChangeReceiver,
                     new IntentFilter(WalletApplication.ACTION_WALLET_REFERENCE_CHANGED));
             transactionAddRemoveListener.onReorganize(null); // trigger at least one reload
@@ -616,6 +619,7 @@ public class WalletTransactionsFragment extends Fragment implements LoaderManage
         @Override
         protected void onStopLoading() {
             broadcastManager.unregisterReceiver(walletChangeReceiver);
+            wallet.removeTransactionConfidenceEventListener(transactionAddRemoveListener);
             wallet.removeChangeEventListener(transactionAddRemoveListener);
             wallet.removeCoinsSentEventListener(transactionAddRemoveListener);
             wallet.removeCoinsReceivedEventListener(transactionAddRemoveListener);
@@ -627,6 +631,7 @@ public class WalletTransactionsFragment extends Fragment implements LoaderManage
         @Override
         protected void onReset() {
             broadcastManager.unregisterReceiver(walletChangeReceiver);
+            wallet.removeTransactionConfidenceEventListener(transactionAddRemoveListener);
             wallet.removeChangeEventListener(transactionAddRemoveListener);
             wallet.removeCoinsSentEventListener(transactionAddRemoveListener);
             wallet.removeCoinsReceivedEventListener(transactionAddRemoveListener);
@@ -639,25 +644,29 @@ public class WalletTransactionsFragment extends Fragment implements LoaderManage
         public List<Transaction> loadInBackground() {
             org.bitcoinj.core.Context.propagate(Constants.CONTEXT);
 
-            final Set<Transaction> transactions = wallet.getTransactions(true);
-            final List<Transaction> filteredTransactions = new ArrayList<Transaction>(transactions.size());
-
-            for (final Transaction tx : transactions) {
-                final boolean sent = tx.getValue(wallet).signum() < 0;
-                final boolean isInternal = tx.getPurpose() == Purpose.KEY_ROTATION;
+            final TransactionHistory history = application.getTransactionHistory();
 
-                if ((direction == Direction.RECEIVED && !sent && !isInternal) || direction == null
-                        || (direction == Direction.SENT && sent && !isInternal))
-                    filteredTransactions.add(tx);
-            }
+            if (direction == Direction.RECEIVED)
+                return history.getReceived();
+            else if (direction == Direction.SENT)
+                return history.getSent();
+            else
+                return history.getAll();
+        }
 
-            Collections.sort(filteredTransactions, TRANSACTION_COMPARATOR);
+        @Override
+        public void deliverResult(final List<Transaction> transactions) {
+            // the history hands out the same list as long as nothing changed
+            if (transactions == lastDelivered)
+                return;
+            lastDelivered = transactions;
 
-            return filteredTransactions;
+            super.deliverResult(transactions);
         }
 
+        // confidence changes can reorder pending transactions; reloading is cheap if the order didn't change
         private final ThrottlingWalletChangeListener transactionAddRemoveListener = new ThrottlingWalletChangeListener(
-                THROTTLE_MS, true, true, false) {
+                THROTTLE_MS, true, true, true) {
             @Override
             public void onThrottledWalletChanged() {
                 safeForceLoad();
@@ -678,28 +687,6 @@ public class WalletTransactionsFragment extends Fragment implements LoaderManage
                 log.info("rejected execution: " + TransactionsLoader.this.toString());
             }
         }
-
-        private static final Comparator<Transaction> TRANSACTION_COMPARATOR = new Comparator<Transaction>() {
-            @Override
-            public int compare(final Transaction tx1, final Transaction tx2) {
-                final boolean pending1 = tx1.getConfidence().getConfidenceType() == ConfidenceType.PENDING;
-                final boolean pending2 = tx2.getConfidence().getConfidenceType() == ConfidenceType.PENDING;
-
-                if (pending1 != pending2)
-                    return pending1 ? -1 : 1;
-
-                final Date updateTime1 = tx1.getUpdateTime();
-                final long time1 = updateTime1 != null ? updateTime1.getTime() : 0;
-                final Date updateTime2 = tx2.getUpdateTime();
-                final long time2 = updateTime2 != null ? updateTime2.getTime() : 0;
-
-                if (time1 != time2)
-                    return time1 > time2 ? -1 : 1;
-
-                return tx1.getHash().compareTo(tx2.getHash());
-            }
-        };
-
     }
     @Override
     public void onSharedPreferenceChanged(final SharedPreferences sharedPreferences, final String key) {
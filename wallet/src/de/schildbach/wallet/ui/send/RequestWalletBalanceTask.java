@@ -63,9 +63,9 @@ import com.google.common.hash.Hashing;
 import com.squareup.moshi.JsonAdapter;
 import com.squareup.moshi.JsonDataException;
 import com.squareup.moshi.Moshi;
-import com.squareup.okhttp.Call;
-import com.squareup.okhttp.Request;
-import com.squareup.okhttp.Response;
+import okhttp3.Call;
+import okhttp3.Request;
+import okhttp3.Response;
 
 import de.schildbach.wallet.Constants;
 import static de.schildbach.wallet.Constants.HEX;
@@ -16,11 +16,17 @@
 
 package de.schildbach.wallet.util;
 
+import java.io.EOFException;
 import java.io.File;
 import java.io.FileFilter;
 import java.io.FileInputStream;
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
 import java.io.Reader;
 import java.security.SecureRandom;
 import java.util.Arrays;
@@ -38,6 +44,7 @@ import org.spongycastle.crypto.params.ParametersWithIV;
 
 import com.google.common.base.Charsets;
 import com.google.common.io.BaseEncoding;
+import com.google.common.io.ByteStreams;
 
 /**
  * This class encrypts and decrypts a string in a manner that is compatible with OpenSSL.
@@ -262,9 +269,197 @@ public class Crypto {
 
             return Arrays.copyOf(decryptedBytes, processLen + doFinalLen);
         } catch (final InvalidCipherTextException x) {
-            throw new IOException("Could not decrypt bytes", x);
+            throw new DecryptionException(x);
         } catch (final DataLengthException x) {
-            throw new IOException("Could not decrypt bytes", x);
+            throw new DecryptionException(x);
+        }
+    }
+
+    /**
+     * Password based encryption using AES - CBC 256 bits, as a stream. Bytes written to the returned stream end up in
+     * the given one in the same format {@link #encrypt(byte[], char[])} produces, using the same small amount of memory
+     * regardless of how many are written. Closing the returned stream writes the last block and closes the given one.
+     * 
+     * @param cipherOut
+     *            The stream to write the encrypted text to
+     * @param password
+     *            The password to use for encryption
+     * @return The stream to write the bytes to encrypt to
+     * @throws IOException
+     */
+    public static OutputStream encryptingStream(final OutputStream cipherOut, final char[] password)
+            throws IOException {
+        final byte[] salt = new byte[SALT_LENGTH];
+        secureRandom.nextBytes(salt);
+
+        final BufferedBlockCipher cipher = new PaddedBufferedBlockCipher(new CBCBlockCipher(new AESFastEngine()));
+        cipher.init(true, getAESPasswordKey(password, salt));
+
+        final OutputStream base64Out = BASE64_ENCRYPT
+                .encodingStream(new OutputStreamWriter(cipherOut, Charsets.UTF_8));
+        base64Out.write(OPENSSL_SALTED_BYTES);
+        base64Out.write(salt);
+        return new CipherOutputStream(base64Out, cipher);
+    }
+
+    /**
+     * Decrypt a stream previously encrypted with this class, or with {@link #encrypt(byte[], char[])}. The text is
+     * decoded and decrypted while reading from the returned stream, so memory use does not depend on its length.
+     * 
+     * @param cipherIn
+     *            The stream to read the encrypted text from
+     * @param password
+     *            password to use for decryption
+     * @return The stream to read the decrypted bytes from
+     * @throws IOException
+     */
+    public static InputStream decryptingStream(final InputStream cipherIn, final char[] password) throws IOException {
+        final InputStream base64In = BASE64_DECRYPT.decodingStream(new InputStreamReader(cipherIn, Charsets.UTF_8));
+
+        final byte[] saltedBytes = new byte[OPENSSL_SALTED_BYTES.length];
+        final byte[] salt = new byte[SALT_LENGTH];
+        try {
+            ByteStreams.readFully(base64In, saltedBytes);
+            ByteStreams.readFully(base64In, salt);
+        } catch (final EOFException x) {
+            throw new IOException("out of salt");
+        }
+
+        final BufferedBlockCipher cipher = new PaddedBufferedBlockCipher(new CBCBlockCipher(new AESFastEngine()));
+        cipher.init(false, getAESPasswordKey(password, salt));
+        return new CipherInputStream(base64In, cipher);
+    }
+
+    /**
+     * The cipher text could not be decrypted, most likely because of a wrong password. With a stream this is only
+     * detected once the padding at its end is reached.
+     */
+    public static final class DecryptionException extends IOException {
+        private DecryptionException(final Exception cause) {
+            super("Could not decrypt bytes", cause);
+        }
+    }
+
+    private static final int STREAM_CHUNK_SIZE = 4096;
+
+    private static final class CipherOutputStream extends FilterOutputStream {
+        private final BufferedBlockCipher cipher;
+        private final byte[] buf;
+
+        private CipherOutputStream(final OutputStream out, final BufferedBlockCipher cipher) {
+            super(out);
+            this.cipher = cipher;
+            this.buf = new byte[cipher.getOutputSize(STREAM_CHUNK_SIZE) + cipher.getBlockSize()];
+        }
+
+        @Override
+        public void write(final int b) throws IOException {
+            write(new byte[] { (byte) b }, 0, 1);
+        }
+
+        @Override
+        public void write(final byte[] b, int off, int len) throws IOException {
+            try {
+                while (len > 0) {
+                    final int chunk = Math.min(len, STREAM_CHUNK_SIZE);
+                    out.write(buf, 0, cipher.processBytes(b, off, chunk, buf, 0));
+                    off += chunk;
+                    len -= chunk;
+                }
+            } catch (final DataLengthException x) {
+                throw new IOException("Could not encrypt bytes", x);
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                out.write(buf, 0, cipher.doFinal(buf, 0));
+            } catch (final InvalidCipherTextException x) {
+                throw new IOException("Could not encrypt bytes", x);
+            } catch (final DataLengthException x) {
+                throw new IOException("Could not encrypt bytes", x);
+            } finally {
+                out.close();
+            }
+        }
+    }
+
+    private static final class CipherInputStream extends FilterInputStream {
+        private final BufferedBlockCipher cipher;
+        private final byte[] inBuf = new byte[STREAM_CHUNK_SIZE];
+        private final byte[] outBuf;
+        private int outPos = 0, outLen = 0;
+        private boolean finished = false;
+
+        private CipherInputStream(final InputStream in, final BufferedBlockCipher cipher) {
+            super(in);
+            this.cipher = cipher;
+            this.outBuf = new byte[cipher.getOutputSize(STREAM_CHUNK_SIZE) + cipher.getBlockSize()];
+        }
+
+        @Override
+        public int read() throws IOException {
+            final byte[] b = new byte[1];
+            return read(b, 0, 1) == -1 ? -1 : b[0] & 0xff;
+        }
+
+        @Override
+        public int read(final byte[] b, final int off, final int len) throws IOException {
+            if (len == 0)
+                return 0;
+            while (outPos == outLen) {
+                if (finished)
+                    return -1;
+                fill();
+            }
+            final int n = Math.min(len, outLen - outPos);
+            System.arraycopy(outBuf, outPos, b, off, n);
+            outPos += n;
+            return n;
+        }
+
+        private void fill() throws IOException {
+            outPos = 0;
+            try {
+                final int n = in.read(inBuf);
+                if (n == -1) {
+                    outLen = cipher.doFinal(outBuf, 0);
+                    finished = true;
+                } else {
+                    outLen = cipher.processBytes(inBuf, 0, n, outBuf, 0);
+                }
+            } catch (final InvalidCipherTextException x) {
+                throw new DecryptionException(x);
+            } catch (final DataLengthException x) {
+                throw new DecryptionException(x);
+            }
+        }
+
+        @Override
+        public long skip(final long n) throws IOException {
+            long skipped = 0;
+            while (skipped < n) {
+                while (outPos == outLen) {
+                    if (finished)
+                        return skipped;
+                    fill();
+                }
+                final int chunk = (int) Math.min(n - skipped, outLen - outPos);
+                outPos += chunk;
+                skipped += chunk;
+            }
+            return skipped;
+        }
+
+        @Override
+        public int available() {
+            return outLen - outPos;
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
         }
     }
 
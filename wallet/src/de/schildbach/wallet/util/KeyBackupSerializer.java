@@ -0,0 +1,96 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.schildbach.wallet.util;
+
+import java.util.Date;
+import java.util.Map;
+
+import org.bitcoinj.crypto.KeyCrypter;
+import org.bitcoinj.crypto.KeyCrypterScrypt;
+import org.bitcoinj.script.Script;
+import org.bitcoinj.signers.LocalTransactionSigner;
+import org.bitcoinj.signers.TransactionSigner;
+import org.bitcoinj.wallet.Protos;
+import org.bitcoinj.wallet.Wallet;
+import org.bitcoinj.wallet.WalletExtension;
+import org.bitcoinj.wallet.WalletProtobufSerializer;
+
+import com.google.protobuf.ByteString;
+
+/**
+ * Builds the proto of the automatic key backup: what {@link WalletProtobufSerializer#walletToProto(Wallet)} builds,
+ * minus the transactions and the last seen block. Unlike stripping those from the full proto afterwards, no
+ * transaction is ever serialized, so the cost only depends on the number of keys.
+ */
+public final class KeyBackupSerializer {
+    private KeyBackupSerializer() {
+    }
+
+    public static Protos.Wallet walletToKeyBackupProto(final Wallet wallet) {
+        final Protos.Wallet.Builder builder = Protos.Wallet.newBuilder();
+        builder.setNetworkIdentifier(wallet.getNetworkParameters().getId());
+        if (wallet.getDescription() != null)
+            builder.setDescription(wallet.getDescription());
+
+        builder.addAllKey(wallet.serializeKeyChainGroupToProtobuf());
+
+        for (final Script script : wallet.getWatchedScripts()) {
+            builder.addWatchedScript(Protos.Script.newBuilder().setProgram(ByteString.copyFrom(script.getProgram()))
+                    .setCreationTimestamp(script.getCreationTimeSeconds() * 1000));
+        }
+
+        // no last seen block, so that restoring replays the chain
+        builder.setLastSeenBlockHeight(-1);
+
+        final KeyCrypter keyCrypter = wallet.getKeyCrypter();
+        if (keyCrypter == null) {
+            builder.setEncryptionType(Protos.Wallet.EncryptionType.UNENCRYPTED);
+        } else {
+            builder.setEncryptionType(keyCrypter.getUnderstoodEncryptionType());
+            if (keyCrypter instanceof KeyCrypterScrypt)
+                builder.setEncryptionParameters(((KeyCrypterScrypt) keyCrypter).getScryptParameters());
+            else
+                throw new RuntimeException("The wallet has encryption of type '"
+                        + keyCrypter.getUnderstoodEncryptionType() + "' but this serializer does not know about it.");
+        }
+
+        final Date keyRotationTime = wallet.getKeyRotationTime();
+        if (keyRotationTime != null)
+            builder.setKeyRotationTime(keyRotationTime.getTime() / 1000);
+
+        for (final WalletExtension extension : wallet.getExtensions().values()) {
+            builder.addExtension(Protos.Extension.newBuilder().setId(extension.getWalletExtensionID())
+                    .setMandatory(extension.isWalletExtensionMandatory())
+                    .setData(ByteString.copyFrom(extension.serializeWalletExtension())));
+        }
+
+        for (final Map.Entry<String, ByteString> tag : wallet.getTags().entrySet())
+            builder.addTags(Protos.Tag.newBuilder().setTag(tag.getKey()).setData(tag.getValue()));
+
+        for (final TransactionSigner signer : wallet.getTransactionSigners()) {
+            // do not serialize LocalTransactionSigner as it's being added implicitly
+            if (signer instanceof LocalTransactionSigner)
+                continue;
+            builder.addTransactionSigners(Protos.TransactionSigner.newBuilder()
+                    .setClassName(signer.getClass().getName()).setData(ByteString.copyFrom(signer.serialize())));
+        }
+
+        builder.setVersion(wallet.getVersion());
+        return builder.build();
+    }
+}
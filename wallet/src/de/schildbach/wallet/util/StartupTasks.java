@@ -0,0 +1,215 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.schildbach.wallet.util;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkState;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.bitcoinj.utils.ContextPropagatingThreadFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.util.concurrent.Uninterruptibles;
+
+/**
+ * Named initialization tasks with dependencies between them. Critical tasks run on the thread calling
+ * {@link #start()}, in the order they were added, and are all done when it returns. The other tasks run on a small
+ * pool as soon as their dependencies are done, or on the thread of whoever {@link #require(String)}s them first.
+ *
+ * Each task that ran is kept in the trace, see {@link #getTrace()}.
+ */
+public final class StartupTasks {
+    private final Map<String, Task> tasks = new LinkedHashMap<String, Task>();
+    private final ThreadPoolExecutor executor;
+    private final long origin = System.currentTimeMillis();
+    private final List<TraceEntry> trace = new ArrayList<TraceEntry>();
+    private boolean started = false;
+
+    private static final Logger log = LoggerFactory.getLogger(StartupTasks.class);
+
+    public static final class TraceEntry {
+        public final String name;
+        public final String thread;
+        public final long startMs;
+        public final long durationMs;
+        public final boolean failed;
+
+        private TraceEntry(final String name, final String thread, final long startMs, final long durationMs,
+                final boolean failed) {
+            this.name = name;
+            this.thread = thread;
+            this.startMs = startMs;
+            this.durationMs = durationMs;
+            this.failed = failed;
+        }
+
+        @Override
+        public String toString() {
+            return name + " on " + thread + ": +" + startMs + " ms, took " + durationMs + " ms"
+                    + (failed ? ", failed" : "");
+        }
+    }
+
+    /**
+     * @param threads
+     *            maximum number of tasks running in the background at the same time
+     */
+    public StartupTasks(final int threads) {
+        this.executor = new ThreadPoolExecutor(threads, threads, 10, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(), new ContextPropagatingThreadFactory("startup"));
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * @param critical
+     *            whether the task has to be done before {@link #start()} returns
+     * @param dependencies
+     *            names of tasks that have to be done before this one starts, all added before
+     */
+    public synchronized void add(final String name, final boolean critical, final Runnable body,
+            final String... dependencies) {
+        checkState(!started, "already started");
+        checkArgument(!tasks.containsKey(name), "duplicate task: %s", name);
+        final List<Task> deps = new ArrayList<Task>(dependencies.length);
+        for (final String dependency : dependencies) {
+            final Task dep = tasks.get(dependency);
+            checkArgument(dep != null, "unknown dependency of %s: %s", name, dependency);
+            deps.add(dep);
+        }
+        tasks.put(name, new Task(name, critical, body, deps));
+    }
+
+    /** Queues the background tasks, then runs the critical ones on the calling thread. */
+    public void start() {
+        final List<Task> critical = new ArrayList<Task>();
+        synchronized (this) {
+            checkState(!started, "already started");
+            started = true;
+            for (final Task task : tasks.values()) {
+                if (task.critical) {
+                    critical.add(task);
+                } else {
+                    executor.execute(new Runnable() {
+                        @Override
+                        public void run() {
+                            try {
+                                task.await(true);
+                            } catch (final RuntimeException | Error x) {
+                                // already logged, rethrown to whoever requires the task
+                            }
+                        }
+                    });
+                }
+            }
+        }
+
+        for (final Task task : critical)
+            task.await(false);
+        log.info("critical startup tasks done after {} ms", System.currentTimeMillis() - origin);
+    }
+
+    /**
+     * Returns once the task is done, running it on the calling thread if it hasn't been started yet. Rethrows what
+     * the task failed with.
+     */
+    public void require(final String name) {
+        final Task task;
+        synchronized (this) {
+            task = tasks.get(name);
+        }
+        checkArgument(task != null, "unknown task: %s", name);
+        task.await(false);
+    }
+
+    /** Tasks that ran so far, in order of completion. */
+    public List<TraceEntry> getTrace() {
+        synchronized (trace) {
+            return Collections.unmodifiableList(new ArrayList<TraceEntry>(trace));
+        }
+    }
+
+    private final class Task {
+        private final String name;
+        private final boolean critical;
+        private final Runnable body;
+        private final List<Task> dependencies;
+        private final AtomicBoolean claimed = new AtomicBoolean();
+        private final CountDownLatch done = new CountDownLatch(1);
+        private volatile Throwable failure;
+
+        private Task(final String name, final boolean critical, final Runnable body, final List<Task> dependencies) {
+            this.name = name;
+            this.critical = critical;
+            this.body = body;
+            this.dependencies = dependencies;
+        }
+
+        /**
+         * @param inBackground
+         *            whether called from the pool, which never runs critical tasks but waits for them
+         */
+        private void await(final boolean inBackground) {
+            if (!(inBackground && critical) && claimed.compareAndSet(false, true))
+                run(inBackground);
+            else
+                Uninterruptibles.awaitUninterruptibly(done);
+
+            final Throwable failure = this.failure;
+            if (failure instanceof Error)
+                throw (Error) failure;
+            if (failure instanceof RuntimeException)
+                throw (RuntimeException) failure;
+        }
+
+        private void run(final boolean inBackground) {
+            try {
+                for (final Task dependency : dependencies)
+                    dependency.await(inBackground);
+
+                final long start = System.currentTimeMillis();
+                try {
+                    body.run();
+                } catch (final RuntimeException | Error x) {
+                    log.error("startup task " + name + " failed", x);
+                    failure = x;
+                }
+                final TraceEntry entry = new TraceEntry(name, Thread.currentThread().getName(), start - origin,
+                        System.currentTimeMillis() - start, failure != null);
+                synchronized (trace) {
+                    trace.add(entry);
+                }
+                log.info("startup task {}", entry);
+            } catch (final RuntimeException | Error x) {
+                failure = x; // a dependency failed
+            } finally {
+                done.countDown();
+            }
+        }
+    }
+}
@@ -0,0 +1,60 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.schildbach.wallet.util;
+
+import javax.annotation.Nullable;
+
+import org.bitcoinj.core.Address;
+import org.bitcoinj.core.Coin;
+import org.bitcoinj.core.Transaction;
+import org.bitcoinj.core.TransactionConfidence.ConfidenceType;
+import org.bitcoinj.wallet.Wallet;
+
+/**
+ * What a transaction means to a wallet, derived once from its inputs and outputs. Obtain instances through
+ * {@link WalletUtils#getTransactionFacts(Transaction, Wallet)}, which caches them.
+ */
+public final class TransactionFacts {
+    public final Coin value;
+    public final boolean sent;
+    public final boolean self;
+    /** recipient of a sent transaction, or our receiving address of a received one */
+    @Nullable
+    public final Address address;
+    public final boolean payToMany;
+    final ConfidenceType confidenceType;
+
+    private TransactionFacts(final Coin value, final boolean self, @Nullable final Address address,
+            final boolean payToMany, final ConfidenceType confidenceType) {
+        this.value = value;
+        this.sent = value.signum() < 0;
+        this.self = self;
+        this.address = address;
+        this.payToMany = payToMany;
+        this.confidenceType = confidenceType;
+    }
+
+    static TransactionFacts compute(final Transaction tx, final Wallet wallet) {
+        final ConfidenceType confidenceType = tx.getConfidence().getConfidenceType();
+        final Coin value = tx.getValue(wallet);
+        final Address address = value.signum() < 0 ? WalletUtils.getToAddressOfSent(tx, wallet)
+                : WalletUtils.getWalletAddressOfReceived(tx, wallet);
+        return new TransactionFacts(value, WalletUtils.isEntirelySelf(tx, wallet), address,
+                WalletUtils.isPayToManyTransaction(tx), confidenceType);
+    }
+}
@@ -30,8 +30,10 @@ import java.io.Writer;
 import java.text.DateFormat;
 import java.text.ParseException;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 
 import javax.annotation.Nullable;
 
@@ -58,6 +60,7 @@ import org.bitcoinj.wallet.Wallet;
 import org.bitcoinj.wallet.WalletProtobufSerializer;
 
 import com.google.common.base.Charsets;
+import com.google.common.io.ByteStreams;
 
 import de.schildbach.wallet.Constants;
 
@@ -146,6 +149,46 @@ public class WalletUtils {
         return null;
     }
 
+    private static final Map<Sha256Hash, TransactionFacts> transactionFactsCache = new HashMap<Sha256Hash, TransactionFacts>();
+    @Nullable
+    private static Wallet transactionFactsWallet = null;
+
+    /**
+     * Returns value, direction and counterparty of a transaction, computed once and cached by transaction hash. A
+     * cached entry is recomputed if the confidence type of the transaction changed since.
+     */
+    public static TransactionFacts getTransactionFacts(final Transaction tx, final Wallet wallet) {
+        synchronized (transactionFactsCache) {
+            if (wallet != transactionFactsWallet) {
+                transactionFactsCache.clear();
+                transactionFactsWallet = wallet;
+            }
+            final TransactionFacts facts = transactionFactsCache.get(tx.getHash());
+            if (facts != null && facts.confidenceType == tx.getConfidence().getConfidenceType())
+                return facts;
+        }
+
+        // computing takes wallet locks, so don't hold the cache lock meanwhile
+        final TransactionFacts facts = TransactionFacts.compute(tx, wallet);
+        synchronized (transactionFactsCache) {
+            if (wallet == transactionFactsWallet)
+                transactionFactsCache.put(tx.getHash(), facts);
+        }
+        return facts;
+    }
+
+    public static void invalidateTransactionFacts(final Sha256Hash txHash) {
+        synchronized (transactionFactsCache) {
+            transactionFactsCache.remove(txHash);
+        }
+    }
+
+    public static void invalidateTransactionFacts() {
+        synchronized (transactionFactsCache) {
+            transactionFactsCache.clear();
+        }
+    }
+
     public static boolean isEntirelySelf(final Transaction tx, final Wallet wallet) {
         for (final TransactionInput input : tx.getInputs()) {
             final TransactionOutput connectedOutput = input.getConnectedOutput();
@@ -161,21 +204,36 @@ public class WalletUtils {
         return true;
     }
 
+    /** Enough to tell a protobuf wallet by its header, see {@link WalletProtobufSerializer#isWallet(InputStream)}. */
+    private static final int WALLET_FORMAT_PEEK_BYTES = 8192;
+
     public static Wallet restoreWalletFromProtobufOrBase58(final InputStream is,
             final NetworkParameters expectedNetworkParameters) throws IOException {
-        is.mark((int) Constants.BACKUP_MAX_CHARS);
+        // only peek at the header rather than marking the whole stream for a retry, so that a stream being decrypted
+        // on the fly isn't buffered in full
+        is.mark(WALLET_FORMAT_PEEK_BYTES);
+        final boolean isProtobuf = WalletProtobufSerializer.isWallet(is);
+        is.reset();
 
-        try {
+        if (isProtobuf) {
             return restoreWalletFromProtobuf(is, expectedNetworkParameters);
-        } catch (final IOException x) {
+        } else {
             try {
-                is.reset();
                 Wallet wallet = restorePrivateKeysFromBase58(is, expectedNetworkParameters);
                 wallet.upgradeToDeterministic(null); //this will result in a different HD seed each time
                 return wallet;
-            } catch (final IOException x2) {
-                throw new IOException(
-                        "cannot read protobuf (" + x.getMessage() + ") or base58 (" + x2.getMessage() + ")", x);
+            } catch (final Crypto.DecryptionException x) {
+                throw x;
+            } catch (final IOException x) {
+                // with a wrong password the plain text is garbage and usually fails to parse before the padding at
+                // the end gives the real reason away, so read on to find out
+                try {
+                    ByteStreams.exhaust(is);
+                } catch (final Crypto.DecryptionException dx) {
+                    throw dx;
+                } catch (final IOException ignore) {
+                }
+                throw new IOException("cannot read protobuf or base58 (" + x.getMessage() + ")", x);
             }
         }
     }
@@ -0,0 +1,128 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.schildbach.wallet.data;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.List;
+
+import org.bitcoinj.core.Coin;
+import org.bitcoinj.core.Context;
+import org.bitcoinj.core.Transaction;
+import org.bitcoinj.params.UnitTestParams;
+import org.bitcoinj.utils.ExchangeRate;
+import org.bitcoinj.utils.Fiat;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class WalletJournalTest {
+    private File file;
+    private WalletJournal journal;
+
+    @Before
+    public void setUp() throws Exception {
+        Context.propagate(new Context(UnitTestParams.get()));
+        file = File.createTempFile("wallet-journal", null);
+        file.delete();
+        journal = new WalletJournal(file, 10);
+    }
+
+    @After
+    public void tearDown() {
+        file.delete();
+    }
+
+    private static Transaction tx(final long lockTime, final String currencyCode, final long fiatValue) {
+        final Transaction tx = new Transaction(UnitTestParams.get());
+        tx.setLockTime(lockTime); // for a distinct hash
+        tx.setExchangeRate(new ExchangeRate(Coin.COIN, Fiat.valueOf(currencyCode, fiatValue)));
+        return tx;
+    }
+
+    @Test
+    public void appendAndRead() throws Exception {
+        final Transaction tx1 = tx(1, "USD", 1234567);
+        final Transaction tx2 = tx(2, "EUR", 1);
+        journal.appendExchangeRate(tx1);
+        journal.appendExchangeRate(tx2);
+
+        final List<WalletJournal.Entry> entries = new WalletJournal(file, 10).read();
+        assertEquals(2, entries.size());
+        assertEquals(tx1.getHash(), entries.get(0).txHash);
+        assertEquals(tx1.getExchangeRate().fiat, entries.get(0).exchangeRate.fiat);
+        assertEquals(Coin.COIN, entries.get(0).exchangeRate.coin);
+        assertEquals(tx2.getHash(), entries.get(1).txHash);
+        assertEquals(tx2.getExchangeRate().fiat, entries.get(1).exchangeRate.fiat);
+    }
+
+    @Test
+    public void compactKeepsRecordsAppendedDuringSave() throws Exception {
+        journal.appendExchangeRate(tx(1, "USD", 100));
+        final long beforeSave = journal.position();
+        journal.appendExchangeRate(tx(2, "USD", 200));
+        journal.compact(beforeSave);
+
+        List<WalletJournal.Entry> entries = journal.read();
+        assertEquals(1, entries.size());
+        assertEquals(Fiat.valueOf("USD", 200), entries.get(0).exchangeRate.fiat);
+
+        // positions stay valid across compactions
+        final long beforeSecondSave = journal.position();
+        journal.compact(beforeSave);
+        assertEquals(1, journal.read().size());
+        journal.compact(beforeSecondSave);
+        assertEquals(0, journal.read().size());
+        assertFalse(file.exists());
+    }
+
+    @Test
+    public void manyAppendsReadBackAfterSync() throws Exception {
+        for (int i = 0; i < 1000; i++)
+            journal.appendExchangeRate(tx(i, "USD", i + 1));
+        journal.sync();
+        assertEquals(1000, new WalletJournal(file, 10).read().size());
+    }
+
+    @Test
+    public void tornRecordIsDropped() throws Exception {
+        journal.appendExchangeRate(tx(1, "USD", 100));
+        final long intact = file.length();
+        append(new byte[] { 0, 0, 0, 40, 1, 2, 3 });
+
+        assertEquals(1, journal.read().size());
+        assertEquals(intact, file.length());
+
+        // appends after the cut are readable again
+        journal.appendExchangeRate(tx(2, "USD", 200));
+        assertEquals(2, journal.read().size());
+    }
+
+    private void append(final byte[] bytes) throws IOException {
+        final FileOutputStream os = new FileOutputStream(file, true);
+        try {
+            os.write(bytes);
+        } finally {
+            os.close();
+        }
+    }
+}
@@ -0,0 +1,140 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.schildbach.wallet.data;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.bitcoinj.core.Context;
+import org.bitcoinj.params.UnitTestParams;
+import org.junit.Before;
+import org.junit.Test;
+
+public class WalletSaveCoordinatorTest {
+    private static final long FOREVER_MS = TimeUnit.HOURS.toMillis(1);
+
+    private final AtomicInteger writes = new AtomicInteger();
+    private final Semaphore written = new Semaphore(0);
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicBoolean overlapped = new AtomicBoolean();
+
+    private final WalletSaveCoordinator.Saver saver = new WalletSaveCoordinator.Saver() {
+        @Override
+        public long save() throws IOException {
+            if (inFlight.incrementAndGet() > 1)
+                overlapped.set(true);
+            try {
+                Thread.sleep(20);
+            } catch (final InterruptedException x) {
+                throw new RuntimeException(x);
+            }
+            inFlight.decrementAndGet();
+            writes.incrementAndGet();
+            written.release();
+            return 1000;
+        }
+    };
+
+    @Before
+    public void setUp() {
+        Context.propagate(new Context(UnitTestParams.get()));
+    }
+
+    @Test
+    public void requestsWithinWindowCollapse() throws Exception {
+        // the window never ends by itself, the flush takes all requests made within
+        final WalletSaveCoordinator coordinator = new WalletSaveCoordinator(saver, FOREVER_MS, FOREVER_MS);
+        for (int i = 0; i < 10; i++)
+            coordinator.requestSave();
+        assertEquals(0, coordinator.getSaveCount());
+        coordinator.flush();
+
+        assertEquals(1, writes.get());
+        assertEquals(11, coordinator.getRequestCount());
+        assertEquals(1, coordinator.getSaveCount());
+        assertEquals(1000, coordinator.getBytesWritten());
+    }
+
+    @Test
+    public void requestedSaveHappensAfterWindow() throws Exception {
+        final WalletSaveCoordinator coordinator = new WalletSaveCoordinator(saver, 1, FOREVER_MS);
+        coordinator.requestSave();
+
+        assertTrue(written.tryAcquire(10, TimeUnit.SECONDS));
+        assertEquals(1, writes.get());
+    }
+
+    @Test
+    public void flushTakesPendingRequest() throws Exception {
+        final WalletSaveCoordinator coordinator = new WalletSaveCoordinator(saver, FOREVER_MS, FOREVER_MS);
+        coordinator.requestSave();
+        coordinator.flush();
+        assertEquals(1, writes.get());
+        assertEquals(1, coordinator.getSaveCount());
+    }
+
+    @Test
+    public void neverTwoSavesInFlight() throws Exception {
+        final WalletSaveCoordinator coordinator = new WalletSaveCoordinator(saver, 1, FOREVER_MS);
+        for (int i = 0; i < 20; i++) {
+            coordinator.requestSave();
+            if (i % 5 == 0)
+                coordinator.flush();
+            Thread.sleep(5);
+        }
+        coordinator.flush();
+
+        assertFalse(overlapped.get());
+        assertEquals(writes.get(), coordinator.getSaveCount());
+    }
+
+    @Test(expected = IOException.class)
+    public void flushRethrowsFailure() throws Exception {
+        new WalletSaveCoordinator(new WalletSaveCoordinator.Saver() {
+            @Override
+            public long save() throws IOException {
+                throw new IOException("disk full");
+            }
+        }, 100, FOREVER_MS).flush();
+    }
+
+    @Test
+    public void failedRequestIsRetried() throws Exception {
+        final AtomicInteger attempts = new AtomicInteger();
+        final WalletSaveCoordinator coordinator = new WalletSaveCoordinator(new WalletSaveCoordinator.Saver() {
+            @Override
+            public long save() throws IOException {
+                if (attempts.incrementAndGet() <= 2)
+                    throw new IOException("disk full");
+                return saver.save();
+            }
+        }, 1, 1);
+        coordinator.requestSave();
+
+        assertTrue(written.tryAcquire(10, TimeUnit.SECONDS));
+        assertEquals(3, attempts.get());
+        assertEquals(1, writes.get());
+    }
+}
@@ -0,0 +1,102 @@
+package de.schildbach.wallet.rates;
+
+import java.util.Locale;
+
+/**
+ * Response bodies shaped like those of the real providers. The list responses can be generated at any size, with the
+ * first currencies being real ones and the rest made up.
+ */
+public class CannedResponses {
+
+    private static final String[] CURRENCIES = { "USD", "EUR", "GBP", "JPY", "CNY", "RUB", "BRL", "VES", "ARS",
+            "COP", "MXN", "INR", "KRW", "AUD", "CAD", "CHF", "PLN", "TRY", "NGN", "ZAR" };
+
+    public static String currency(int i) {
+        return i < CURRENCIES.length ? CURRENCIES[i] : String.format(Locale.US, "X%02d", i - CURRENCIES.length);
+    }
+
+    /** A price with four significant decimals and some more that get dropped. */
+    public static String price(int i) {
+        return String.format(Locale.US, "%d.%04d%d", 10 + i * 7, (i * 1237) % 10000, i % 10);
+    }
+
+    public static String dashRetail(int count) {
+        StringBuilder json = new StringBuilder("[");
+        for (int i = 0; i < count; i++) {
+            json.append("{\"baseCurrency\":\"DASH\",\"quoteCurrency\":\"").append(currency(i))
+                    .append("\",\"price\":").append(price(i)).append(",\"source\":\"dashretail\"},");
+        }
+        // pairs on other bases are left out
+        json.append("{\"baseCurrency\":\"BTC\",\"quoteCurrency\":\"USD\",\"price\":8000.5,\"source\":\"dashretail\"}");
+        return json.append("]").toString();
+    }
+
+    public static String dashRates(int count) {
+        StringBuilder json = new StringBuilder("{");
+        for (int i = 0; i < count; i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append('"').append(currency(i)).append("\":\"").append(price(i)).append('"');
+        }
+        return json.append("}").toString();
+    }
+
+    public static String bitcoinAverage(int count) {
+        StringBuilder json = new StringBuilder("{");
+        for (int i = 0; i < count; i++) {
+            json.append("\"BTC").append(currency(i)).append("\":{\"ask\":1,\"bid\":1,\"last\":").append(price(i))
+                    .append(",\"high\":1,\"low\":1,\"averages\":{\"day\":1},\"volume\":1,\"timestamp\":1},");
+        }
+        // pairings of other cryptos are left out
+        json.append("\"ETHUSD\":{\"last\":200.5,\"averages\":{\"day\":1}}");
+        return json.append("}").toString();
+    }
+
+    public static String cryptoCompareAverage() {
+        return "{\"RAW\":{\"MARKET\":\"CUSTOMAGG\",\"FROMSYMBOL\":\"DASH\",\"TOSYMBOL\":\"BTC\",\"PRICE\":0.01234,"
+                + "\"VOLUME24HOUR\":1000},\"DISPLAY\":{\"PRICE\":\"BTC 0.01234\"}}";
+    }
+
+    public static String cryptoCompareVes() {
+        return "{\"VES\":71234.56}";
+    }
+
+    public static String dashCasa() {
+        return "{\"dashrate\":901234.5}";
+    }
+
+    public static String bitPay(int count) {
+        StringBuilder json = new StringBuilder("{\"data\":[");
+        for (int i = 0; i < count; i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append("{\"code\":\"").append(currency(i)).append("\",\"name\":\"Currency ").append(i)
+                    .append("\",\"rate\":").append(price(i)).append('}');
+        }
+        return json.append("]}").toString();
+    }
+
+    public static String poloniex() {
+        return "{\"asks\":[[\"0.01240000\",12.5]],\"bids\":[[\"0.01220000\",3.2]],\"isFrozen\":\"0\",\"seq\":123}";
+    }
+
+    public static String localBitcoins() {
+        return "{\"USD\":{\"avg_1h\":8000.1,\"avg_6h\":8001.2},\"VES\":{\"avg_6h\":60123.45,"
+                + "\"avg_12h\":60100.1,\"avg_24h\":60000.0,\"volume_btc\":\"12.3\"}}";
+    }
+
+    /** Serves all providers with the given number of currencies where they have a list. */
+    public static void serveAll(RatesStubServer server, int count) {
+        server.respond(RatesStubServer.DASH_RETAIL, dashRetail(count));
+        server.respond(RatesStubServer.DASH_RATES, dashRates(count));
+        server.respond(RatesStubServer.BITCOIN_AVERAGE, bitcoinAverage(count));
+        server.respond(RatesStubServer.CRYPTO_COMPARE, "data/generateAvg", cryptoCompareAverage());
+        server.respond(RatesStubServer.CRYPTO_COMPARE, "data/price", cryptoCompareVes());
+        server.respond(RatesStubServer.DASH_CASA, dashCasa());
+        server.respond(RatesStubServer.BIT_PAY, bitPay(count));
+        server.respond(RatesStubServer.POLONIEX, poloniex());
+        server.respond(RatesStubServer.LOCAL_BITCOINS, localBitcoins());
+    }
+}
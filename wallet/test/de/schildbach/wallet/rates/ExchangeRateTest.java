@@ -0,0 +1,30 @@
+package de.schildbach.wallet.rates;
+
+import static org.junit.Assert.assertEquals;
+
+import java.math.BigDecimal;
+
+import org.bitcoinj.utils.Fiat;
+import org.junit.Test;
+
+public class ExchangeRateTest {
+    private static final String[] RATES = { "0", "1", "1.5", "123.45", "123.4567", "123.456789", "0.0001",
+            "0.00009", "-4.25", "+7", ".5", "5.", "1e3", "1.25E-2", "92233720368547.7580" };
+
+    @Test
+    public void parseValueMatchesBigDecimal() throws Exception {
+        for (final String rate : RATES)
+            assertEquals(rate, new BigDecimal(rate).movePointRight(Fiat.SMALLEST_UNIT_EXPONENT).longValue(),
+                    ExchangeRate.parseValue(rate));
+    }
+
+    @Test(expected = NumberFormatException.class)
+    public void parseValueRejectsGarbage() throws Exception {
+        ExchangeRate.parseValue("n/a");
+    }
+
+    @Test(expected = NumberFormatException.class)
+    public void parseValueRejectsEmpty() throws Exception {
+        ExchangeRate.parseValue("");
+    }
+}
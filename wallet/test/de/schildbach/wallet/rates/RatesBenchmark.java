@@ -0,0 +1,199 @@
+package de.schildbach.wallet.rates;
+
+import static org.junit.Assume.assumeTrue;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Callable;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.squareup.moshi.JsonAdapter;
+import com.squareup.moshi.Moshi;
+import com.squareup.moshi.Types;
+
+import okhttp3.OkHttpClient;
+
+/**
+ * Time to first rate of the fallback chain against slow and failing providers, and parse throughput per provider.
+ * Skipped unless run with {@code -Dbenchmark=true}; results are printed.
+ */
+public class RatesBenchmark {
+    private static final int CURRENCIES = 170;
+    private static final int WARMUP = 20;
+    private static final int ROUNDS = 200;
+    private static final int PARSE_ROUNDS = 2000;
+
+    private RatesStubServer server;
+
+    @Before
+    public void setUp() throws Exception {
+        assumeTrue(Boolean.getBoolean("benchmark"));
+        server = new RatesStubServer();
+        CannedResponses.serveAll(server, CURRENCIES);
+        server.start();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        if (server != null)
+            server.shutdown();
+    }
+
+    private HedgedRatesFetcher chain() {
+        return new HedgedRatesFetcher(Arrays.<ExchangeRatesClient> asList(
+                new DashRetailClient(server.url(RatesStubServer.DASH_RETAIL), new OkHttpClient.Builder()),
+                new DashRatesClient(server.url(RatesStubServer.DASH_RATES), new OkHttpClient.Builder())));
+    }
+
+    @Test
+    public void timeToFirstRate() throws Exception {
+        measureFirstRate("all healthy", chain(), 3);
+
+        server.delay(RatesStubServer.DASH_RETAIL, 800);
+        measureFirstRate("primary 800 ms slow", chain(), 3);
+
+        server.delay(RatesStubServer.DASH_RETAIL, 0);
+        server.fail(RatesStubServer.DASH_RETAIL, 503);
+        measureFirstRate("primary failing", chain(), 3);
+
+        server.fail(RatesStubServer.DASH_RETAIL, 200);
+        server.disconnect(RatesStubServer.DASH_RETAIL);
+        measureFirstRate("primary dropping connections", chain(), 3);
+    }
+
+    private void measureFirstRate(final String scenario, final HedgedRatesFetcher fetcher, final int rounds)
+            throws Exception {
+        fetcher.fetch(); // warm up connections
+        final long[] millis = new long[rounds];
+        for (int i = 0; i < rounds; i++) {
+            final long start = System.nanoTime();
+            fetcher.fetch();
+            millis[i] = (System.nanoTime() - start) / 1000000;
+        }
+        Arrays.sort(millis);
+        System.out.println(String.format(Locale.US, "time to first rate, %s: median %d ms, max %d ms", scenario,
+                millis[rounds / 2], millis[rounds - 1]));
+    }
+
+    @Test
+    public void endToEndThroughput() throws Exception {
+        measure("DashRetail fetch", ROUNDS, new Callable<Object>() {
+            private final DashRetailClient client = new DashRetailClient(server.url(RatesStubServer.DASH_RETAIL),
+                    new OkHttpClient.Builder());
+
+            @Override
+            public Object call() throws Exception {
+                return client.getRates();
+            }
+        });
+        measure("DashRates fetch", ROUNDS, new Callable<Object>() {
+            private final DashRatesClient client = new DashRatesClient(server.url(RatesStubServer.DASH_RATES),
+                    new OkHttpClient.Builder());
+
+            @Override
+            public Object call() throws Exception {
+                return client.getRates();
+            }
+        });
+        measure("BitcoinAverage fetch", ROUNDS, new Callable<Object>() {
+            private final BitcoinAverageClient client = new BitcoinAverageClient(
+                    server.url(RatesStubServer.BITCOIN_AVERAGE), new OkHttpClient.Builder());
+
+            @Override
+            public Object call() throws Exception {
+                return client.getGlobalIndices().body();
+            }
+        });
+        measure("BitPay fetch", ROUNDS, new Callable<Object>() {
+            private final BitPayClient client = new BitPayClient(server.url(RatesStubServer.BIT_PAY),
+                    new OkHttpClient.Builder());
+
+            @Override
+            public Object call() throws Exception {
+                return client.getRates().body();
+            }
+        });
+        measure("CryptoCompare fetch", ROUNDS, new Callable<Object>() {
+            private final CryptoCompareClient client = new CryptoCompareClient(
+                    server.url(RatesStubServer.CRYPTO_COMPARE), new OkHttpClient.Builder());
+
+            @Override
+            public Object call() throws Exception {
+                return client.getDashCustomAverage().body();
+            }
+        });
+        measure("DashCasa fetch", ROUNDS, new Callable<Object>() {
+            private final DashCasaClient client = new DashCasaClient(server.url(RatesStubServer.DASH_CASA),
+                    new OkHttpClient.Builder());
+
+            @Override
+            public Object call() throws Exception {
+                return client.getRates().body();
+            }
+        });
+        measure("Poloniex fetch", ROUNDS, new Callable<Object>() {
+            private final PoloniexClient client = new PoloniexClient(server.url(RatesStubServer.POLONIEX),
+                    new OkHttpClient.Builder());
+
+            @Override
+            public Object call() throws Exception {
+                return client.getRates().body();
+            }
+        });
+        measure("LocalBitcoins fetch", ROUNDS, new Callable<Object>() {
+            private final LocalBitcoinsClient client = new LocalBitcoinsClient(
+                    server.url(RatesStubServer.LOCAL_BITCOINS), new OkHttpClient.Builder());
+
+            @Override
+            public Object call() throws Exception {
+                return client.getRates().body();
+            }
+        });
+    }
+
+    @Test
+    public void parseThroughput() throws Exception {
+        final JsonAdapter<List<ExchangeRate>> dashRetail = new Moshi.Builder().add(new DashRetailRateAdapter()).build()
+                .adapter(Types.newParameterizedType(List.class, ExchangeRate.class));
+        final JsonAdapter<List<ExchangeRate>> dashRates = new Moshi.Builder().add(new ExchangeRateListMoshiAdapter())
+                .build().adapter(Types.newParameterizedType(List.class, ExchangeRate.class));
+        final JsonAdapter<List<ExchangeRate>> bitcoinAverage = new Moshi.Builder().add(new BitcoinAverageRateAdapter())
+                .build().adapter(Types.newParameterizedType(List.class, ExchangeRate.class));
+
+        measureParse("DashRetail", dashRetail, CannedResponses.dashRetail(CURRENCIES));
+        measureParse("DashRates", dashRates, CannedResponses.dashRates(CURRENCIES));
+        measureParse("BitcoinAverage", bitcoinAverage, CannedResponses.bitcoinAverage(CURRENCIES));
+    }
+
+    private void measureParse(final String provider, final JsonAdapter<List<ExchangeRate>> adapter,
+            final String json) throws Exception {
+        final long nanos = measure(provider + " parse", PARSE_ROUNDS, new Callable<Object>() {
+            @Override
+            public Object call() throws Exception {
+                return adapter.fromJson(json);
+            }
+        });
+        System.out.println(String.format(Locale.US, "  %s: %.0f rates/ms, %.1f MB/s", provider,
+                CURRENCIES / (nanos / 1e6), json.length() / (nanos / 1e9) / 1e6));
+    }
+
+    /** @return median nanoseconds per call */
+    private long measure(final String name, final int rounds, final Callable<Object> call) throws Exception {
+        for (int i = 0; i < WARMUP; i++)
+            call.call();
+        final long[] nanos = new long[rounds];
+        for (int i = 0; i < rounds; i++) {
+            final long start = System.nanoTime();
+            call.call();
+            nanos[i] = System.nanoTime() - start;
+        }
+        Arrays.sort(nanos);
+        System.out.println(String.format(Locale.US, "%s: median %.3f ms, p90 %.3f ms", name, nanos[rounds / 2] / 1e6,
+                nanos[rounds * 9 / 10] / 1e6));
+        return nanos[rounds / 2];
+    }
+}
@@ -0,0 +1,187 @@
+package de.schildbach.wallet.rates;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import okhttp3.OkHttpClient;
+
+public class RatesClientsTest {
+    private static final int CURRENCIES = 30;
+
+    private RatesStubServer server;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new RatesStubServer();
+        CannedResponses.serveAll(server, CURRENCIES);
+        server.start();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        server.shutdown();
+    }
+
+    private String url(final String provider) {
+        return server.url(provider);
+    }
+
+    private static OkHttpClient.Builder client() {
+        return new OkHttpClient.Builder();
+    }
+
+    private static void assertRates(final List<ExchangeRate> rates) {
+        assertEquals(CURRENCIES, rates.size());
+        for (int i = 0; i < CURRENCIES; i++) {
+            final ExchangeRate rate = rates.get(i);
+            assertEquals(CannedResponses.currency(i), rate.getCurrencyCode());
+            assertEquals(new BigDecimal(CannedResponses.price(i)).movePointRight(4).longValue(), rate.getValue());
+        }
+    }
+
+    @Test
+    public void dashRetail() throws Exception {
+        assertRates(new DashRetailClient(url(RatesStubServer.DASH_RETAIL), client()).getRates());
+    }
+
+    @Test
+    public void dashRates() throws Exception {
+        assertRates(new DashRatesClient(url(RatesStubServer.DASH_RATES), client()).getRates());
+    }
+
+    @Test
+    public void bitcoinAverage() throws Exception {
+        assertRates(new BitcoinAverageClient(url(RatesStubServer.BITCOIN_AVERAGE), client()).getGlobalIndices()
+                .body());
+    }
+
+    @Test
+    public void cryptoCompare() throws Exception {
+        final CryptoCompareClient client = new CryptoCompareClient(url(RatesStubServer.CRYPTO_COMPARE), client());
+        assertEquals(new BigDecimal("0.01234"), client.getDashCustomAverage().body().getRate());
+        assertEquals(new BigDecimal("71234.56"), client.getVESBTCRate().body().getRate());
+    }
+
+    @Test
+    public void dashCasa() throws Exception {
+        assertEquals(new BigDecimal("901234.5"),
+                new DashCasaClient(url(RatesStubServer.DASH_CASA), client()).getRates().body().getDashVesPrice());
+    }
+
+    @Test
+    public void bitPay() throws Exception {
+        final List<BitPayRate> rates = new BitPayClient(url(RatesStubServer.BIT_PAY), client()).getRates().body()
+                .getRates();
+        assertEquals(CURRENCIES, rates.size());
+        assertEquals("USD", rates.get(0).getCode());
+        assertEquals(new BigDecimal(CannedResponses.price(0)), rates.get(0).getRate());
+    }
+
+    @Test
+    public void poloniex() throws Exception {
+        assertEquals(0, new BigDecimal("0.0123").compareTo(
+                new PoloniexClient(url(RatesStubServer.POLONIEX), client()).getRates().body().getRate()));
+    }
+
+    @Test
+    public void localBitcoins() throws Exception {
+        // no 1h average, so the 6h one
+        assertEquals(new BigDecimal("60123.45"), new LocalBitcoinsClient(url(RatesStubServer.LOCAL_BITCOINS), client())
+                .getRates().body().getDashVesPrice());
+    }
+
+    @Test
+    public void hedgedFetcherFallsBackOnError() throws Exception {
+        server.fail(RatesStubServer.DASH_RETAIL, 503);
+        final HedgedRatesFetcher fetcher = new HedgedRatesFetcher(Arrays.<ExchangeRatesClient> asList(
+                new DashRetailClient(url(RatesStubServer.DASH_RETAIL), client()),
+                new DashRatesClient(url(RatesStubServer.DASH_RATES), client())));
+
+        assertRates(fetcher.fetch().rates);
+        assertEquals(1, server.requestCount(RatesStubServer.DASH_RETAIL));
+        assertEquals(1, server.requestCount(RatesStubServer.DASH_RATES));
+    }
+
+    @Test
+    public void hedgedFetcherHedgesSlowProvider() throws Exception {
+        server.delay(RatesStubServer.DASH_RETAIL, 3000);
+        final HedgedRatesFetcher fetcher = new HedgedRatesFetcher(Arrays.<ExchangeRatesClient> asList(
+                new DashRetailClient(url(RatesStubServer.DASH_RETAIL), client()),
+                new DashRatesClient(url(RatesStubServer.DASH_RATES), client())));
+
+        final long start = System.currentTimeMillis();
+        assertRates(fetcher.fetch().rates);
+        assertTrue(System.currentTimeMillis() - start < 2500);
+    }
+
+    @Test
+    public void hedgedFetcherCancelsLosingCall() throws Exception {
+        server.delay(RatesStubServer.DASH_RETAIL, 5000);
+        final DashRetailClient slow = new DashRetailClient(url(RatesStubServer.DASH_RETAIL), client());
+        final CountDownLatch slowDone = new CountDownLatch(1);
+        final HedgedRatesFetcher fetcher = new HedgedRatesFetcher(Arrays.<ExchangeRatesClient> asList(
+                new ExchangeRatesClient() {
+                    @Override
+                    public List<ExchangeRate> getRates() throws Exception {
+                        try {
+                            return slow.getRates();
+                        } finally {
+                            slowDone.countDown();
+                        }
+                    }
+                },
+                new DashRatesClient(url(RatesStubServer.DASH_RATES), client())));
+
+        assertRates(fetcher.fetch().rates);
+        // without cancelling its call, the loser would block until the response arrives
+        assertTrue(slowDone.await(1000, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void concurrentRequestsCancelAbandonedCalls() throws Exception {
+        server.delay(RatesStubServer.DASH_RETAIL, 5000);
+        final DashRetailClient slow = new DashRetailClient(url(RatesStubServer.DASH_RETAIL), client());
+        final CountDownLatch slowDone = new CountDownLatch(1);
+        final ConcurrentRequests requests = new ConcurrentRequests(200, TimeUnit.MILLISECONDS);
+        try {
+            final Future<List<ExchangeRate>> future = requests.submit(new Callable<List<ExchangeRate>>() {
+                @Override
+                public List<ExchangeRate> call() throws Exception {
+                    try {
+                        return slow.getRates();
+                    } finally {
+                        slowDone.countDown();
+                    }
+                }
+            });
+            assertNull(requests.getOptional(future));
+        } finally {
+            requests.cancelAll();
+        }
+        assertTrue(slowDone.await(1000, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void hedgedFetcherGivesUpWhenAllFail() throws Exception {
+        server.disconnect(RatesStubServer.DASH_RETAIL);
+        server.fail(RatesStubServer.DASH_RATES, 500);
+        final HedgedRatesFetcher fetcher = new HedgedRatesFetcher(Arrays.<ExchangeRatesClient> asList(
+                new DashRetailClient(url(RatesStubServer.DASH_RETAIL), client()),
+                new DashRatesClient(url(RatesStubServer.DASH_RATES), client())));
+
+        assertNull(fetcher.fetch());
+    }
+}
@@ -0,0 +1,175 @@
+package de.schildbach.wallet.rates;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.net.ServerSocketFactory;
+
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import okhttp3.mockwebserver.SocketPolicy;
+
+/**
+ * Local HTTP server that stands in for the rate providers. Every provider is served below its own path prefix, see
+ * {@link #url(String)}, with a canned body and optional latency and error injection.
+ */
+public class RatesStubServer {
+
+    public static final String DASH_RETAIL = "dashretail";
+    public static final String DASH_RATES = "dashrates";
+    public static final String BITCOIN_AVERAGE = "bitcoinaverage";
+    public static final String CRYPTO_COMPARE = "cryptocompare";
+    public static final String DASH_CASA = "dashcasa";
+    public static final String BIT_PAY = "bitpay";
+    public static final String POLONIEX = "poloniex";
+    public static final String LOCAL_BITCOINS = "localbitcoins";
+
+    private final MockWebServer server = new MockWebServer();
+    private final ConcurrentMap<String, Stub> stubs = new ConcurrentHashMap<>();
+
+    private static class Stub {
+        /** by path below the provider prefix, the empty string matches any */
+        final Map<String, String> bodies = new ConcurrentHashMap<>();
+        volatile long latencyMs;
+        volatile int code = 200;
+        volatile boolean disconnect;
+        final AtomicInteger requests = new AtomicInteger();
+    }
+
+    public RatesStubServer() {
+        // without this, Nagle and delayed ACKs add 40 ms to every response on loopback
+        server.setServerSocketFactory(new NoDelayServerSocketFactory());
+        server.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) throws InterruptedException {
+                return respond(request);
+            }
+        });
+    }
+
+    public void start() throws IOException {
+        server.start();
+    }
+
+    public void shutdown() throws IOException {
+        server.shutdown();
+    }
+
+    /** Base URL to give the client of the provider. */
+    public String url(String provider) {
+        return server.url("/" + provider + "/").toString();
+    }
+
+    public RatesStubServer respond(String provider, String body) {
+        return respond(provider, "", body);
+    }
+
+    /** Serves the body for requests to the given path, for providers with more than one endpoint. */
+    public RatesStubServer respond(String provider, String path, String body) {
+        stub(provider).bodies.put(path, body);
+        return this;
+    }
+
+    public RatesStubServer delay(String provider, long latencyMs) {
+        stub(provider).latencyMs = latencyMs;
+        return this;
+    }
+
+    public RatesStubServer fail(String provider, int code) {
+        stub(provider).code = code;
+        return this;
+    }
+
+    /** Drops the connection without a response. */
+    public RatesStubServer disconnect(String provider) {
+        stub(provider).disconnect = true;
+        return this;
+    }
+
+    public int requestCount(String provider) {
+        return stub(provider).requests.get();
+    }
+
+    private Stub stub(String provider) {
+        Stub stub = stubs.get(provider);
+        if (stub == null) {
+            Stub newStub = new Stub();
+            stub = stubs.putIfAbsent(provider, newStub);
+            if (stub == null) {
+                stub = newStub;
+            }
+        }
+        return stub;
+    }
+
+    private static class NoDelayServerSocketFactory extends ServerSocketFactory {
+
+        @Override
+        public ServerSocket createServerSocket() throws IOException {
+            return new ServerSocket() {
+                @Override
+                public Socket accept() throws IOException {
+                    Socket socket = super.accept();
+                    socket.setTcpNoDelay(true);
+                    return socket;
+                }
+            };
+        }
+
+        @Override
+        public ServerSocket createServerSocket(int port) throws IOException {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public ServerSocket createServerSocket(int port, int backlog) throws IOException {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public ServerSocket createServerSocket(int port, int backlog, InetAddress address) throws IOException {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    private MockResponse respond(RecordedRequest request) throws InterruptedException {
+        String path = request.getPath();
+        int query = path.indexOf('?');
+        if (query >= 0) {
+            path = path.substring(0, query);
+        }
+        String[] segments = path.substring(1).split("/", 2);
+        Stub stub = stubs.get(segments[0]);
+        if (stub == null) {
+            return new MockResponse().setResponseCode(404);
+        }
+        stub.requests.incrementAndGet();
+
+        if (stub.latencyMs > 0) {
+            Thread.sleep(stub.latencyMs);
+        }
+        if (stub.disconnect) {
+            return new MockResponse().setSocketPolicy(SocketPolicy.DISCONNECT_AT_START);
+        }
+        if (stub.code != 200) {
+            return new MockResponse().setResponseCode(stub.code);
+        }
+
+        String body = stub.bodies.get(segments.length > 1 ? segments[1] : "");
+        if (body == null) {
+            body = stub.bodies.get("");
+        }
+        if (body == null) {
+            return new MockResponse().setResponseCode(404);
+        }
+        return new MockResponse().setHeader("Content-Type", "application/json").setBody(body);
+    }
+}
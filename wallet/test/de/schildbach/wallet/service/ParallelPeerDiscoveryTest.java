@@ -0,0 +1,168 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.schildbach.wallet.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.UnknownHostException;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.bitcoinj.core.Context;
+import org.bitcoinj.net.discovery.PeerDiscovery;
+import org.bitcoinj.net.discovery.PeerDiscoveryException;
+import org.bitcoinj.params.UnitTestParams;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ParallelPeerDiscoveryTest {
+    private static final Map<String, PeerDiscovery> NONE = Collections.emptyMap();
+
+    @Before
+    public void setUp() {
+        Context.propagate(new Context(UnitTestParams.get()));
+    }
+
+    /** Source answering with count peers starting at the given last address byte, after the given delay. */
+    private static PeerDiscovery source(final int first, final int count, final long delayMs,
+            final AtomicBoolean queried) {
+        return new PeerDiscovery() {
+            @Override
+            public InetSocketAddress[] getPeers(final long services, final long timeoutValue,
+                    final TimeUnit timeoutUnit) throws PeerDiscoveryException {
+                if (queried != null)
+                    queried.set(true);
+                try {
+                    Thread.sleep(delayMs);
+                    final InetSocketAddress[] peers = new InetSocketAddress[count];
+                    for (int i = 0; i < count; i++)
+                        peers[i] = new InetSocketAddress(
+                                InetAddress.getByAddress(new byte[] { 10, 0, 0, (byte) (first + i) }), 9999);
+                    return peers;
+                } catch (final InterruptedException x) {
+                    throw new PeerDiscoveryException(x);
+                } catch (final UnknownHostException x) {
+                    throw new RuntimeException(x);
+                }
+            }
+
+            @Override
+            public void shutdown() {
+            }
+        };
+    }
+
+    private static ParallelPeerDiscovery.SourceResult result(final ParallelPeerDiscovery discovery,
+            final String name) {
+        for (final ParallelPeerDiscovery.SourceResult result : discovery.getSourceResults())
+            if (result.name.equals(name))
+                return result;
+        return null;
+    }
+
+    @Test
+    public void fallbackOnlyIfLiveSourcesFallShort() throws Exception {
+        final AtomicBoolean seedQueried = new AtomicBoolean();
+        final Map<String, PeerDiscovery> live = new LinkedHashMap<String, PeerDiscovery>();
+        live.put("DNS", source(0, 10, 200, null));
+        live.put("DMN list", source(100, 10, 0, null));
+        final ParallelPeerDiscovery discovery = new ParallelPeerDiscovery(live, NONE,
+                Collections.singletonMap("seed", source(200, 20, 0, seedQueried)), 10, 2, 1000, 1000);
+
+        assertEquals(20, discovery.getPeers(0, 5, TimeUnit.SECONDS).length);
+        assertFalse(seedQueried.get());
+        discovery.shutdown();
+    }
+
+    @Test
+    public void fallbackAfterDelay() throws Exception {
+        final Map<String, PeerDiscovery> live = new LinkedHashMap<String, PeerDiscovery>();
+        live.put("DNS", source(0, 10, 5000, null));
+        live.put("DMN list", source(100, 3, 0, null));
+        final ParallelPeerDiscovery discovery = new ParallelPeerDiscovery(live, NONE,
+                Collections.singletonMap("seed", source(200, 20, 0, null)), 10, 2, 100, 1000);
+
+        final long start = System.currentTimeMillis();
+        assertEquals(23, discovery.getPeers(0, 10, TimeUnit.SECONDS).length);
+        assertTrue(System.currentTimeMillis() - start < 2000);
+
+        final ParallelPeerDiscovery.SourceResult dns = result(discovery, "DNS");
+        assertTrue(dns.cancelled);
+        assertEquals(0, dns.numPeers);
+        assertEquals(3, result(discovery, "DMN list").numPeers);
+        discovery.shutdown();
+    }
+
+    @Test
+    public void oneSourceDoesNotEndDiscovery() throws Exception {
+        final Map<String, PeerDiscovery> live = new LinkedHashMap<String, PeerDiscovery>();
+        live.put("DMN list", source(100, 50, 0, null));
+        live.put("DNS", source(0, 10, 300, null));
+        final ParallelPeerDiscovery discovery = new ParallelPeerDiscovery(live, NONE, NONE, 10, 2, 100, 1000);
+
+        assertEquals(60, discovery.getPeers(0, 5, TimeUnit.SECONDS).length);
+        assertFalse(result(discovery, "DNS").cancelled);
+        discovery.shutdown();
+    }
+
+    @Test
+    public void timeoutCancelsSlowSources() throws Exception {
+        final ParallelPeerDiscovery discovery = new ParallelPeerDiscovery(
+                Collections.singletonMap("DNS", source(0, 10, 5000, null)), NONE,
+                Collections.singletonMap("seed", source(200, 1, 0, null)), 10, 2, 50, 1000);
+
+        assertEquals(1, discovery.getPeers(0, 300, TimeUnit.MILLISECONDS).length);
+        assertTrue(result(discovery, "DNS").cancelled);
+        discovery.shutdown();
+    }
+
+    @Test
+    public void knownPeersDoNotEndDiscovery() throws Exception {
+        final Map<String, PeerDiscovery> live = new LinkedHashMap<String, PeerDiscovery>();
+        live.put("DMN list", source(100, 10, 0, null));
+        live.put("DNS", source(0, 10, 300, null));
+        final ParallelPeerDiscovery discovery = new ParallelPeerDiscovery(live,
+                Collections.singletonMap("known", source(200, 10, 0, null)), NONE, 10, 2, 100, 1000);
+
+        // known and DMN list alone would be plenty, but DNS is still waited for
+        assertEquals(30, discovery.getPeers(0, 5, TimeUnit.SECONDS).length);
+        assertFalse(result(discovery, "DNS").cancelled);
+        discovery.shutdown();
+    }
+
+    @Test
+    public void hangingSourceOnlyWaitedForBriefly() throws Exception {
+        final Map<String, PeerDiscovery> live = new LinkedHashMap<String, PeerDiscovery>();
+        live.put("DNS", source(0, 10, 60000, null));
+        live.put("DMN list", source(100, 10, 0, null));
+        final ParallelPeerDiscovery discovery = new ParallelPeerDiscovery(live, NONE, NONE, 10, 2, 100, 200);
+
+        final long start = System.currentTimeMillis();
+        assertEquals(10, discovery.getPeers(0, 10, TimeUnit.SECONDS).length);
+        assertTrue(System.currentTimeMillis() - start < 2000);
+        assertTrue(result(discovery, "DNS").cancelled);
+        discovery.shutdown();
+    }
+}
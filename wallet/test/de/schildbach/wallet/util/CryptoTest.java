@@ -26,12 +26,16 @@ import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.util.Random;
 
 import org.bitcoinj.wallet.WalletProtobufSerializer;
 import org.junit.Test;
 
 import com.google.common.base.Charsets;
+import com.google.common.io.ByteStreams;
 
 /**
  * @author Andreas Schildbach
@@ -100,6 +104,77 @@ public class CryptoTest {
         assertTrue(WalletProtobufSerializer.isWallet(new ByteArrayInputStream(backupCrLf)));
     }
 
+    @Test
+    public void roundtripStreamDifferentByteSizes() throws Exception {
+        final ByteArrayOutputStream stream = new ByteArrayOutputStream(4096);
+        while (stream.toByteArray().length < 4096) {
+            final byte[] plainBytes = stream.toByteArray();
+            assertArrayEquals(plainBytes, decryptStream(encryptStream(plainBytes, PASSWORD), PASSWORD));
+
+            stream.write(42);
+        }
+    }
+
+    @Test
+    public void roundtripStreamLarge() throws Exception {
+        final byte[] plainBytes = new byte[3 * 1024 * 1024 + 7];
+        new Random(1).nextBytes(plainBytes);
+        assertArrayEquals(plainBytes, decryptStream(encryptStream(plainBytes, PASSWORD), PASSWORD));
+    }
+
+    @Test
+    public void streamInteroperatesWithStrings() throws Exception {
+        final byte[] plainBytes = new byte[10000];
+        new Random(2).nextBytes(plainBytes);
+
+        final String streamEncrypted = new String(encryptStream(plainBytes, PASSWORD), Charsets.UTF_8);
+        assertArrayEquals(plainBytes, Crypto.decryptBytes(streamEncrypted, PASSWORD));
+
+        final byte[] stringEncrypted = Crypto.encrypt(plainBytes, PASSWORD).getBytes(Charsets.UTF_8);
+        assertArrayEquals(plainBytes, decryptStream(stringEncrypted, PASSWORD));
+    }
+
+    @Test
+    public void streamLineLengthMatchesStrings() throws Exception {
+        final String encrypted = new String(encryptStream(new byte[1000], PASSWORD), Charsets.UTF_8);
+        assertEquals(Crypto.encrypt(new byte[1000], PASSWORD).length(), encrypted.length());
+        for (final String line : encrypted.split("\n", -1))
+            assertTrue(line.length() <= 76);
+    }
+
+    @Test(expected = IOException.class)
+    public void streamWrongPassword() throws Exception {
+        decryptStream(encryptStream(PLAIN_BYTES, PASSWORD), "wrong".toCharArray());
+    }
+
+    @Test
+    public void backupsStream() throws Exception {
+        final InputStream backup = Crypto.decryptingStream(
+                getClass().getResourceAsStream("dash-wallet-backup-testnet-5.18"), PASSWORD);
+        assertTrue(WalletProtobufSerializer.isWallet(new ByteArrayInputStream(ByteStreams.toByteArray(backup))));
+
+        final InputStream backupCrLf = Crypto.decryptingStream(
+                getClass().getResourceAsStream("dash-wallet-backup-testnet-5.18-crlf"), PASSWORD);
+        assertTrue(WalletProtobufSerializer.isWallet(new ByteArrayInputStream(ByteStreams.toByteArray(backupCrLf))));
+    }
+
+    private static byte[] encryptStream(final byte[] plainBytes, final char[] password) throws IOException {
+        final ByteArrayOutputStream cipherBytes = new ByteArrayOutputStream();
+        final OutputStream os = Crypto.encryptingStream(cipherBytes, password);
+        // in odd pieces, to cross block boundaries
+        for (int i = 0; i < plainBytes.length; i += 1001)
+            os.write(plainBytes, i, Math.min(1001, plainBytes.length - i));
+        os.close();
+        return cipherBytes.toByteArray();
+    }
+
+    private static byte[] decryptStream(final byte[] cipherBytes, final char[] password) throws IOException {
+        final InputStream is = Crypto.decryptingStream(new ByteArrayInputStream(cipherBytes), password);
+        final byte[] plainBytes = ByteStreams.toByteArray(is);
+        is.close();
+        return plainBytes;
+    }
+
     private String readBackupFromResource(final String filename) throws IOException {
         final BufferedReader reader = new BufferedReader(
                 new InputStreamReader(getClass().getResourceAsStream(filename), Charsets.UTF_8));
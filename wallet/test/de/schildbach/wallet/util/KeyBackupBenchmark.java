@@ -0,0 +1,82 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.schildbach.wallet.util;
+
+import static org.junit.Assume.assumeTrue;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+import org.bitcoinj.core.Context;
+import org.bitcoinj.params.UnitTestParams;
+import org.bitcoinj.wallet.Wallet;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Cost of the automatic key backup against the number of transactions in the wallet, stripping the full wallet proto
+ * versus building the key-only one. Skipped unless run with {@code -Dbenchmark=true}; results are printed.
+ */
+public class KeyBackupBenchmark {
+    private static final int[] TRANSACTIONS = { 0, 100, 1000, 10000 };
+    private static final int WARMUP = 20;
+    private static final int ROUNDS = 21;
+
+    @Before
+    public void setUp() {
+        assumeTrue(Boolean.getBoolean("benchmark"));
+        Context.propagate(new Context(UnitTestParams.get()));
+    }
+
+    @Test
+    public void backupCostByTransactionCount() throws Exception {
+        for (final int count : TRANSACTIONS) {
+            final Wallet wallet = KeyBackupSerializerTest.walletWithTransactions(count);
+            final long stripped = measure(new Runnable() {
+                @Override
+                public void run() {
+                    KeyBackupSerializerTest.strippedWalletProto(wallet).toByteArray();
+                }
+            });
+            final long keysOnly = measure(new Runnable() {
+                @Override
+                public void run() {
+                    KeyBackupSerializer.walletToKeyBackupProto(wallet).toByteArray();
+                }
+            });
+            System.out.println(String.format(Locale.US,
+                    "%5d transactions: stripped full proto %.3f ms, key-only proto %.3f ms, backup %d bytes", count,
+                    stripped / 1e6, keysOnly / 1e6,
+                    KeyBackupSerializer.walletToKeyBackupProto(wallet).getSerializedSize()));
+        }
+    }
+
+    /** @return median nanoseconds per run */
+    private static long measure(final Runnable run) {
+        for (int i = 0; i < WARMUP; i++)
+            run.run();
+        final long[] nanos = new long[ROUNDS];
+        for (int i = 0; i < ROUNDS; i++) {
+            final long start = System.nanoTime();
+            run.run();
+            nanos[i] = System.nanoTime() - start;
+        }
+        Arrays.sort(nanos);
+        return nanos[ROUNDS / 2];
+    }
+}
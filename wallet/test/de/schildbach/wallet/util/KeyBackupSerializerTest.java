@@ -0,0 +1,112 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.schildbach.wallet.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.util.Collections;
+import java.util.Date;
+
+import org.bitcoinj.core.Coin;
+import org.bitcoinj.core.Context;
+import org.bitcoinj.core.ECKey;
+import org.bitcoinj.core.NetworkParameters;
+import org.bitcoinj.core.Sha256Hash;
+import org.bitcoinj.core.Transaction;
+import org.bitcoinj.core.TransactionInput;
+import org.bitcoinj.core.TransactionOutPoint;
+import org.bitcoinj.crypto.KeyCrypterScrypt;
+import org.bitcoinj.params.UnitTestParams;
+import org.bitcoinj.script.ScriptBuilder;
+import org.bitcoinj.wallet.Protos;
+import org.bitcoinj.wallet.Wallet;
+import org.bitcoinj.wallet.WalletProtobufSerializer;
+import org.bitcoinj.wallet.WalletTransaction;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.primitives.Ints;
+import com.google.protobuf.ByteString;
+
+public class KeyBackupSerializerTest {
+    private static final NetworkParameters PARAMS = UnitTestParams.get();
+
+    @Before
+    public void setUp() {
+        Context.propagate(new Context(PARAMS));
+    }
+
+    /** Wallet with the given number of transactions paying to it. */
+    static Wallet walletWithTransactions(final int count) {
+        final Wallet wallet = new Wallet(PARAMS);
+        for (int i = 0; i < count; i++) {
+            final Transaction tx = new Transaction(PARAMS);
+            tx.addInput(new TransactionInput(PARAMS, tx, new byte[0],
+                    new TransactionOutPoint(PARAMS, 0, Sha256Hash.of(Ints.toByteArray(i)))));
+            tx.addOutput(Coin.CENT, wallet.currentReceiveAddress());
+            wallet.addWalletTransaction(new WalletTransaction(WalletTransaction.Pool.UNSPENT, tx));
+        }
+        return wallet;
+    }
+
+    /** What the key backup used to be built from. */
+    static Protos.Wallet strippedWalletProto(final Wallet wallet) {
+        final Protos.Wallet.Builder builder = new WalletProtobufSerializer().walletToProto(wallet).toBuilder();
+        builder.clearTransaction();
+        builder.clearLastSeenBlockHash();
+        builder.setLastSeenBlockHeight(-1);
+        builder.clearLastSeenBlockTimeSecs();
+        return builder.build();
+    }
+
+    @Test
+    public void sameAsStrippedWalletProto() throws Exception {
+        final Wallet wallet = walletWithTransactions(10);
+        wallet.setDescription("description");
+        wallet.setTag("tag", ByteString.copyFromUtf8("data"));
+        wallet.addWatchedScripts(Collections.singletonList(ScriptBuilder.createOutputScript(new ECKey())));
+        wallet.setKeyRotationTime(new Date(1500000000000L));
+
+        final Protos.Wallet proto = KeyBackupSerializer.walletToKeyBackupProto(wallet);
+        assertEquals(strippedWalletProto(wallet), proto);
+        assertEquals(0, proto.getTransactionCount());
+    }
+
+    @Test
+    public void sameAsStrippedWalletProtoEncrypted() throws Exception {
+        final Wallet wallet = walletWithTransactions(1);
+        final KeyCrypterScrypt keyCrypter = new KeyCrypterScrypt(2);
+        wallet.encrypt(keyCrypter, keyCrypter.deriveKey("password"));
+
+        assertEquals(strippedWalletProto(wallet), KeyBackupSerializer.walletToKeyBackupProto(wallet));
+    }
+
+    @Test
+    public void readsBack() throws Exception {
+        final Wallet wallet = walletWithTransactions(3);
+        final byte[] bytes = KeyBackupSerializer.walletToKeyBackupProto(wallet).toByteArray();
+        assertTrue(WalletProtobufSerializer.isWallet(new ByteArrayInputStream(bytes)));
+
+        final Wallet restored = new WalletProtobufSerializer().readWallet(new ByteArrayInputStream(bytes), true,
+                null);
+        assertEquals(wallet.currentReceiveAddress(), restored.currentReceiveAddress());
+        assertEquals(0, restored.getTransactions(true).size());
+    }
+}
@@ -0,0 +1,158 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.schildbach.wallet.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.bitcoinj.core.Context;
+import org.bitcoinj.params.UnitTestParams;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class StartupTasksTest {
+    @BeforeClass
+    public static void setUpClass() {
+        Context.propagate(new Context(UnitTestParams.get()));
+    }
+
+    private static Runnable record(final List<String> log, final String name) {
+        return new Runnable() {
+            @Override
+            public void run() {
+                log.add(name);
+            }
+        };
+    }
+
+    @Test
+    public void criticalInOrderOnCaller() throws Exception {
+        final List<String> log = Collections.synchronizedList(new ArrayList<String>());
+        final StartupTasks tasks = new StartupTasks(2);
+        tasks.add("a", true, record(log, "a"));
+        tasks.add("b", true, record(log, "b"), "a");
+        tasks.add("c", true, record(log, "c"), "b");
+        tasks.start();
+
+        assertEquals(3, log.size());
+        assertEquals("a", log.get(0));
+        assertEquals("b", log.get(1));
+        assertEquals("c", log.get(2));
+        for (final StartupTasks.TraceEntry entry : tasks.getTrace())
+            assertEquals(Thread.currentThread().getName(), entry.thread);
+    }
+
+    @Test
+    public void backgroundRunsNextToCritical() throws Exception {
+        final CountDownLatch backgroundRunning = new CountDownLatch(1);
+        final StartupTasks tasks = new StartupTasks(2);
+        tasks.add("background", false, new Runnable() {
+            @Override
+            public void run() {
+                backgroundRunning.countDown();
+            }
+        });
+        tasks.add("critical", true, new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    // would time out if the background task was waiting for us
+                    assertTrue(backgroundRunning.await(5, TimeUnit.SECONDS));
+                } catch (final InterruptedException x) {
+                    throw new RuntimeException(x);
+                }
+            }
+        });
+        tasks.start();
+    }
+
+    @Test
+    public void backgroundWaitsForCriticalDependency() throws Exception {
+        final List<String> log = Collections.synchronizedList(new ArrayList<String>());
+        final StartupTasks tasks = new StartupTasks(1);
+        tasks.add("critical", true, new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    Thread.sleep(50);
+                } catch (final InterruptedException x) {
+                    throw new RuntimeException(x);
+                }
+                log.add("critical");
+            }
+        });
+        tasks.add("background", false, record(log, "background"), "critical");
+        tasks.start();
+        tasks.require("background");
+
+        assertEquals("critical", log.get(0));
+        assertEquals("background", log.get(1));
+        assertEquals(2, tasks.getTrace().size());
+    }
+
+    @Test
+    public void requireRunsOnlyOnce() throws Exception {
+        final List<String> log = Collections.synchronizedList(new ArrayList<String>());
+        final StartupTasks tasks = new StartupTasks(2);
+        tasks.add("lazy", false, record(log, "lazy"));
+        tasks.add("critical", true, new Runnable() {
+            @Override
+            public void run() {
+                tasks.require("lazy");
+                tasks.require("lazy");
+            }
+        });
+        tasks.start();
+        tasks.require("lazy");
+
+        assertEquals(1, log.size());
+    }
+
+    @Test
+    public void requireRethrowsFailure() throws Exception {
+        final StartupTasks tasks = new StartupTasks(1);
+        tasks.add("broken", false, new Runnable() {
+            @Override
+            public void run() {
+                throw new IllegalStateException("broken");
+            }
+        });
+        tasks.add("dependent", false, record(new ArrayList<String>(), "dependent"), "broken");
+        tasks.start();
+
+        try {
+            tasks.require("dependent");
+            fail();
+        } catch (final IllegalStateException x) {
+            assertEquals("broken", x.getMessage());
+        }
+        assertTrue(tasks.getTrace().get(0).failed);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void unknownDependency() throws Exception {
+        new StartupTasks(1).add("a", true, record(new ArrayList<String>(), "a"), "b");
+    }
+}
@@ -17,12 +17,18 @@
 
 package de.schildbach.wallet.util;
 
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 
 import org.bitcoinj.params.MainNetParams;
 import org.bitcoinj.params.TestNet3Params;
 import org.junit.Test;
 
+import com.google.common.base.Charsets;
+import com.google.common.io.ByteStreams;
+
 /**
  * @author Andreas Schildbach
  */
@@ -58,4 +64,32 @@ public class WalletUtilsTest {
         WalletUtils.restoreWalletFromProtobufOrBase58(getClass().getResourceAsStream("bitcoin-backup-base58-testnet"),
                 MainNetParams.get());
     }
+
+    @Test(expected = Crypto.DecryptionException.class)
+    public void restoreWalletFromEncryptedBase58_wrongPassword() throws Exception {
+        WalletUtils.restoreWalletFromProtobufOrBase58(encryptedResource("backup-base58-testnet", "wrong"),
+                TestNet3Params.get());
+    }
+
+    @Test(expected = Crypto.DecryptionException.class)
+    public void restoreWalletFromEncryptedProtobuf_wrongPassword() throws Exception {
+        WalletUtils.restoreWalletFromProtobufOrBase58(encryptedResource("backup-protobuf-testnet", "wrong"),
+                TestNet3Params.get());
+    }
+
+    @Test
+    public void restoreWalletFromEncrypted() throws Exception {
+        WalletUtils.restoreWalletFromProtobufOrBase58(encryptedResource("backup-base58-testnet", "password"),
+                TestNet3Params.get());
+        WalletUtils.restoreWalletFromProtobufOrBase58(encryptedResource("backup-protobuf-testnet", "password"),
+                TestNet3Params.get());
+    }
+
+    /** Resource encrypted with "password", being decrypted with the given one. */
+    private InputStream encryptedResource(final String name, final String password) throws IOException {
+        final byte[] plainBytes = ByteStreams.toByteArray(getClass().getResourceAsStream(name));
+        final byte[] cipherBytes = Crypto.encrypt(plainBytes, "password".toCharArray()).getBytes(Charsets.UTF_8);
+        return new BufferedInputStream(
+                Crypto.decryptingStream(new ByteArrayInputStream(cipherBytes), password.toCharArray()));
+    }
 }